@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A minimal benchmark harness for the snippets in this folder. Every benchmark is run for a number of
+ * warm-up and measured iterations of a fixed duration on a given number of threads, and its throughput
+ * is reported in operations per second. The results are printed and written to a JSON file (in a
+ * layout similar to the JMH JSON output), so they can be compared between runs.
+ * <p>
+ * Usage: java -Djava.awt.headless=true Bench [-o results.json] [suite...]
+ * <br>
+ * Suites: logger, http, oval (all of them by default).
+ * <br>
+ * Options: -Dbench.warmup=2 -Dbench.iterations=5 -Dbench.time=1000 (iteration time in milliseconds)
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class Bench {
+
+    /**
+     * A single benchmarked operation. The returned value is consumed so that the work cannot be optimised away.
+     */
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    /**
+     * A group of related benchmarks.
+     */
+    public interface Suite {
+        void run(Bench bench) throws Exception;
+    }
+
+    private static final Map<String, Suite> SUITES = new LinkedHashMap<>();
+
+    static {
+        SUITES.put("logger", new LoggerBenchmark());
+        SUITES.put("http", new HttpRequestBenchmark());
+        SUITES.put("oval", new OvalButtonBenchmark());
+    }
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationMillis;
+    private final List<String> results = new ArrayList<>();
+
+    public Bench(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String output = "bench-results.json";
+        List<String> selected = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            }
+            else if (SUITES.containsKey(args[i])) {
+                selected.add(args[i]);
+            }
+            else {
+                System.err.println("Unknown suite: " + args[i] + ", available: " + SUITES.keySet());
+                System.exit(1);
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.addAll(SUITES.keySet());
+        }
+
+        Bench bench = new Bench(Integer.getInteger("bench.warmup", 2), Integer.getInteger("bench.iterations", 5),
+                Long.getLong("bench.time", 1000));
+        for (String name : selected) {
+            SUITES.get(name).run(bench);
+        }
+        bench.writeJson(Paths.get(output));
+        System.out.println("Results written to " + output);
+    }
+
+    /**
+     * Measure the throughput of an operation.
+     *
+     * @param benchmark Name of the benchmark.
+     * @param params Parameters of this run, e.g. message size (only used for reporting).
+     * @param threads Number of threads running the operation at the same time.
+     * @param operation The measured operation. Must be thread-safe if threads > 1.
+     */
+    public void measure(String benchmark, Map<String, Object> params, int threads, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(threads, operation);
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = runIteration(threads, operation);
+        }
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+
+        System.out.printf("%-40s %-50s threads=%-3d %,15.1f +- %,.1f ops/s%n", benchmark, params, threads, mean, error);
+        results.add(toJson(benchmark, params, threads, mean, error, scores));
+    }
+
+    /**
+     * @return Operations per second.
+     */
+    private double runIteration(int threads, Operation operation) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] counts = new long[threads];
+        Exception[] failure = new Exception[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                long count = 0;
+                int sink = 0;
+                try {
+                    ready.countDown();
+                    start.await();
+                    while (running.get()) {
+                        Object result = operation.run();
+                        sink += result == null ? 0 : System.identityHashCode(result);
+                        count++;
+                    }
+                }
+                catch (Exception e) {
+                    failure[0] = e;
+                }
+                counts[index] = count + (sink == 42 ? 1 : 0);
+            }, "bench-" + t);
+            workers[t].start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(iterationMillis);
+        running.set(false);
+        long end = System.nanoTime();
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += counts[t];
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return total * 1e9 / (end - begin);
+    }
+
+    private static String toJson(String benchmark, Map<String, Object> params, int threads, double score,
+                                 double error, double[] rawData) {
+        StringBuilder json = new StringBuilder();
+        json.append("  {\n");
+        json.append("    \"benchmark\": \"").append(benchmark).append("\",\n");
+        json.append("    \"mode\": \"thrpt\",\n");
+        json.append("    \"threads\": ").append(threads).append(",\n");
+        json.append("    \"params\": {");
+        String separator = "";
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            json.append(separator).append('"').append(param.getKey()).append("\": \"").append(param.getValue()).append('"');
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("    \"primaryMetric\": {\n");
+        json.append("      \"score\": ").append(score).append(",\n");
+        json.append("      \"scoreError\": ").append(error).append(",\n");
+        json.append("      \"scoreUnit\": \"ops/s\",\n");
+        json.append("      \"rawData\": [");
+        for (int i = 0; i < rawData.length; i++) {
+            json.append(i == 0 ? "" : ", ").append(rawData[i]);
+        }
+        json.append("]\n");
+        json.append("    }\n");
+        json.append("  }");
+        return json.toString();
+    }
+
+    private void writeJson(Path path) throws IOException {
+        String json = "[\n" + String.join(",\n", results) + "\n]\n";
+        Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Convenience method for building the parameters map, e.g. params("size", 10, "shape", "oval").
+     */
+    public static Map<String, Object> params(Object... keyValues) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            params.put(keyValues[i].toString(), keyValues[i + 1]);
+        }
+        return params;
+    }
+}
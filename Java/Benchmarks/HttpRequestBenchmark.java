@@ -0,0 +1,273 @@
+import java.io.ByteArrayInputStream;
+import java.io.RandomAccessFile;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks of HttpRequest.createParameters() and HttpParameters, HttpRequest.getResponse() (also with
+ * HttpMetrics), the pooled HttpRequestClient.getResponse(), the fan-out of a batch with HttpRequest.getAll() and
+ * HttpFanOut, compressed requests and responses, uploads of a file, a buffer and a stream, and HTTP/1.1 against
+ * HTTP/2 at different numbers of concurrent requests.
+ * The requests go to a local StubServer (H2cStubServer for HTTP/2), so the results do not depend on the network.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class HttpRequestBenchmark implements Bench.Suite {
+    private static final int[] PARAMETER_COUNTS = {1, 10, 100};
+    private static final int[] PAYLOAD_SIZES = {1024, 64 * 1024, 1024 * 1024};
+    private static final int[] THREADS = {1, 8};
+    private static final int FAN_OUT = 50;
+    private static final int DELAY_MILLIS = 5;
+    private static final int[] CONCURRENT_REQUESTS = {1, 10, 100};
+    private static final int[] UPLOAD_SIZES = {64 * 1024, 16 * 1024 * 1024};
+
+    @Override
+    public void run(Bench bench) throws Exception {
+        for (int count : PARAMETER_COUNTS) {
+            Map<String, String> parameters = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                parameters.put("key" + i, "value" + i);
+            }
+            Map<String, Object> params = Bench.params("parameters", count);
+            bench.measure("createParameters (keySet and get, not encoded)", params, 1,
+                    () -> concatenate(parameters, false));
+            bench.measure("createParameters (keySet and get, URLEncoder)", params, 1,
+                    () -> concatenate(parameters, true));
+            bench.measure("HttpRequest.createParameters", params, 1,
+                    () -> HttpRequest.createParameters(parameters));
+            HttpParameters builder = new HttpParameters();
+            bench.measure("HttpParameters reused", params, 1,
+                    () -> builder.clear().addAll(parameters).toString());
+        }
+
+        StubServer server = new StubServer();
+        server.start();
+        try {
+            String url = server.getUrl("/bytes");
+            for (int size : PAYLOAD_SIZES) {
+                String parameters = "size=" + size;
+                for (int threads : THREADS) {
+                    bench.measure("HttpRequest.getResponse", Bench.params("payloadSize", size), threads,
+                            () -> HttpRequest.getResponse("GET", url, parameters));
+                }
+            }
+            // the same requests measured by HttpMetrics, for the cost of the instrumentation
+            HttpMetrics metrics = new HttpMetrics();
+            HttpRequest.addListener(metrics);
+            try {
+                for (int threads : THREADS) {
+                    bench.measure("HttpRequest.getResponse with HttpMetrics", Bench.params("payloadSize", 1024), threads,
+                            () -> HttpRequest.getResponse("GET", url, "size=1024"));
+                }
+                System.out.println(metrics);
+            }
+            finally {
+                HttpRequest.removeListener(metrics);
+            }
+            try (HttpRequestClient client = new HttpRequestClient()) {
+                for (int size : PAYLOAD_SIZES) {
+                    String parameters = "size=" + size;
+                    for (int threads : THREADS) {
+                        bench.measure("HttpRequestClient.getResponse", Bench.params("payloadSize", size), threads,
+                                () -> client.getResponse("GET", url, parameters));
+                    }
+                }
+                System.out.println(client);
+            }
+
+            // a batch of requests to a slow server: one after another vs. all of them in flight at once
+            String delayUrl = server.getUrl("/delay");
+            String delay = "ms=" + DELAY_MILLIS;
+            List<HttpRequest.Request> requests = new ArrayList<>();
+            for (int i = 0; i < FAN_OUT; i++) {
+                requests.add(new HttpRequest.Request("GET", delayUrl, delay));
+            }
+            Map<String, Object> fanOut = Bench.params("requests", FAN_OUT, "delayMillis", DELAY_MILLIS);
+            bench.measure("HttpRequest.getResponse batch", fanOut, 1, () -> {
+                int length = 0;
+                for (HttpRequest.Request request : requests) {
+                    length += HttpRequest.getResponse(request.getMethod(), request.getUrl(), request.getParameters()).length();
+                }
+                return length;
+            });
+            bench.measure("HttpRequest.getAll batch", fanOut, 1, () -> {
+                int length = 0;
+                for (CompletableFuture<String> response : HttpRequest.getAll(requests)) {
+                    length += response.join().length();
+                }
+                return length;
+            });
+            HttpFanOut fanOutClient = new HttpFanOut();
+            bench.measure("HttpFanOut.getAll batch", fanOut, 1, () -> {
+                int length = 0;
+                for (Future<String> response : fanOutClient.getAll(requests, 10_000)) {
+                    length += response.get().length();
+                }
+                return length;
+            });
+
+            compression(bench, server);
+            upload(bench, server);
+        }
+        finally {
+            server.stop();
+        }
+        http2(bench);
+    }
+
+    /**
+     * The same requests over HTTP/1.1 (a connection per request in flight) and HTTP/2 (all of them on one
+     * connection), each thread keeping one request in flight, reporting the latency percentiles.
+     */
+    private static void http2(Bench bench) throws Exception {
+        H2cStubServer server = new H2cStubServer(DELAY_MILLIS, 1024);
+        server.start();
+        try {
+            String url = server.getUrl("/");
+            for (int concurrent : CONCURRENT_REQUESTS) {
+                for (boolean http2 : new boolean[] {false, true}) {
+                    HttpRequest.setHttp2(http2);
+                    Latencies latencies = new Latencies();
+                    bench.measure("HttpRequest.getResponseAsync", Bench.params("http2", http2, "delayMillis", DELAY_MILLIS),
+                            concurrent, () -> {
+                                long start = System.nanoTime();
+                                String response = HttpRequest.getResponseAsync("GET", url, "").join();
+                                latencies.record(System.nanoTime() - start);
+                                return response;
+                            });
+                    System.out.println("    latency " + latencies);
+                }
+            }
+            System.out.println(server);
+        }
+        finally {
+            HttpRequest.setHttp2(false);
+            server.stop();
+        }
+    }
+
+    /**
+     * The most recent request latencies, enough of them to leave out the warm-up iterations.
+     */
+    private static final class Latencies {
+        private static final int SIZE = 1 << 16;
+
+        private final long[] samples = new long[SIZE];
+        private final AtomicLong count = new AtomicLong();
+
+        void record(long nanos) {
+            samples[(int) (count.getAndIncrement() & (SIZE - 1))] = nanos;
+        }
+
+        @Override
+        public String toString() {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count.get(), SIZE));
+            Arrays.sort(sorted);
+            return String.format("p50=%.2f ms, p99=%.2f ms, p99.9=%.2f ms, max=%.2f ms", percentile(sorted, 0.5),
+                    percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+        }
+    }
+
+    /**
+     * The createParameters() this repository used to have, as the baseline for HttpParameters.
+     * With encode, the keys and values are encoded with URLEncoder, so the result is the same as HttpParameters.
+     */
+    private static String concatenate(Map<String, String> postArguments, boolean encode) {
+        StringBuilder builder = new StringBuilder();
+        for (String key : postArguments.keySet()) {
+            builder.append(encode ? URLEncoder.encode(key, StandardCharsets.UTF_8) : key);
+            builder.append("=");
+            String value = postArguments.get(key);
+            builder.append(encode ? URLEncoder.encode(value, StandardCharsets.UTF_8) : value);
+            builder.append("&");
+        }
+        return builder.substring(0, builder.length() - 1); // remove final &
+    }
+
+    /**
+     * Compressible JSON responses with and without Accept-Encoding, reporting the bytes on the wire,
+     * and POST bodies with and without request compression.
+     */
+    private static void compression(Bench bench, StubServer server) throws Exception {
+        String textUrl = server.getUrl("/text");
+        for (int size : PAYLOAD_SIZES) {
+            String parameters = "size=" + size;
+            for (boolean compressed : new boolean[] {false, true}) {
+                HttpRequest.setResponseCompression(compressed);
+                AtomicLong responses = new AtomicLong();
+                long sentBefore = server.getBytesSent();
+                bench.measure("HttpRequest.getResponse text", Bench.params("payloadSize", size, "compressed", compressed), 1,
+                        () -> {
+                            responses.incrementAndGet();
+                            return HttpRequest.getResponse("GET", textUrl, parameters);
+                        });
+                long perResponse = (server.getBytesSent() - sentBefore) / Math.max(1, responses.get());
+                System.out.printf("    %,d bytes on the wire per response (%.1f%% saved)%n", perResponse,
+                        100.0 * (size - perResponse) / size);
+            }
+        }
+        HttpRequest.setResponseCompression(true);
+
+        String echoUrl = server.getUrl("/echo");
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; form.length() < 64 * 1024; i++) {
+            form.append("key").append(i).append("=value").append(i % 10).append('&');
+        }
+        String body = form.toString();
+        for (boolean compressed : new boolean[] {false, true}) {
+            HttpRequest.setRequestCompression(compressed);
+            bench.measure("HttpRequest.getResponse POST", Bench.params("bodySize", body.length(), "compressed", compressed), 1,
+                    () -> HttpRequest.getResponse("POST", echoUrl, body));
+        }
+        HttpRequest.setRequestCompression(false);
+    }
+
+    /**
+     * The same body sent from a file, a buffer and a stream, and the file also through HttpRequestClient
+     * (sent with sendfile). None of them is copied into memory, so the larger bodies only take longer.
+     */
+    private static void upload(Bench bench, StubServer server) throws Exception {
+        String url = server.getUrl("/upload");
+        Path file = Files.createTempFile("upload", ".bin");
+        try (HttpRequestClient client = new HttpRequestClient()) {
+            for (int size : UPLOAD_SIZES) {
+                try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+                    out.setLength(size);
+                }
+                byte[] bytes = new byte[size];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                Map<String, Object> params = Bench.params("bodySize", size);
+                bench.measure("HttpRequest.getResponse PUT Path", params, 1,
+                        () -> HttpRequest.getResponse("PUT", url, file, null));
+                bench.measure("HttpRequest.getResponse PUT ByteBuffer", params, 1,
+                        () -> HttpRequest.getResponse("PUT", url, buffer, null));
+                bench.measure("HttpRequest.getResponse PUT InputStream (chunked)", params, 1,
+                        () -> HttpRequest.getResponse("PUT", url, new ByteArrayInputStream(bytes), null));
+                bench.measure("HttpRequestClient.getResponse PUT Path", params, 1,
+                        () -> client.getResponse("PUT", url, file, null));
+            }
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import logger.Level;
+import logger.Logger;
+import logger.OverflowPolicy;
+
+/**
+ * Benchmarks of Logger.log() and Logger.flush() for different numbers of threads and message sizes.
+ * Console output is always off, so the console does not distort the results.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class LoggerBenchmark implements Bench.Suite {
+    private static final int[] THREADS = {1, 4, 8};
+    private static final int[] MESSAGE_SIZES = {16, 256};
+    private static final int MESSAGES_PER_FLUSH = 100;
+
+    private final ThreadLocal<int[]> counter = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public void run(Bench bench) throws Exception {
+        for (int size : MESSAGE_SIZES) {
+            String message = message(size);
+
+            // only buffering, the buffers are emptied every 1024 messages of each thread
+            Logger.startLogger(false, false, false);
+            for (int threads : THREADS) {
+                bench.measure("Logger.log", Bench.params("mode", "sync", "messageSize", size), threads, () -> {
+                    Logger.log(message, Level.INFO);
+                    if ((++counter.get()[0] & 1023) == 0) {
+                        Logger.flush();
+                    }
+                    return null;
+                });
+            }
+            Logger.stopLogger();
+
+            Logger.startAsyncLogger(false, false, 64 * 1024, OverflowPolicy.BLOCK);
+            for (int threads : THREADS) {
+                bench.measure("Logger.log", Bench.params("mode", "async", "messageSize", size), threads, () -> {
+                    Logger.log(message, Level.INFO);
+                    return null;
+                });
+            }
+            Logger.stopLogger();
+
+            // one operation is a batch of messages written to the log file
+            Logger.startLogger(false, true, false);
+            for (int threads : THREADS) {
+                bench.measure("Logger.flush", Bench.params("messageSize", size, "messages", MESSAGES_PER_FLUSH), threads, () -> {
+                    for (int i = 0; i < MESSAGES_PER_FLUSH; i++) {
+                        Logger.log(message, Level.INFO);
+                    }
+                    Logger.flush();
+                    return null;
+                });
+            }
+            Logger.stopLogger();
+        }
+
+        Logger.startLogger(false, false, false);
+        Logger.setMinimumLevel(Level.INFO);
+        for (int threads : THREADS) {
+            bench.measure("Logger.log", Bench.params("mode", "disabled"), threads, () -> {
+                Logger.log(Level.DEBUG, "x={} y={}", threads, counter);
+                return null;
+            });
+        }
+        Logger.setMinimumLevel(Level.DEBUG);
+        Logger.stopLogger();
+    }
+
+    private static String message(int size) {
+        StringBuilder message = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            message.append((char) ('a' + i % 26));
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,92 @@
+import ovalButton.OvalButton;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+
+/**
+ * Benchmarks of the hit-testing and painting of OvalButton for different shapes and sizes. Painting is measured
+ * with the cached shapes and after a resize, when the shapes are built again.
+ * Run with -Djava.awt.headless=true, the button is painted into an image and never shown.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class OvalButtonBenchmark implements Bench.Suite {
+    private static final int[][] SIZES = {{50, 50}, {400, 100}};
+    private static final int[][] SHAPES = {
+            {OvalButton.SHAPE_OVAL, OvalButton.VERTICAL},
+            {OvalButton.SHAPE_CAPSULE, OvalButton.VERTICAL},
+            {OvalButton.SHAPE_CAPSULE, OvalButton.HORIZONTAL}
+    };
+    private static final int POINTS = 1024;
+
+    /**
+     * Exposes the protected hit-tests. The button is never shown, so its location on the screen is fixed.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static class BenchButton extends OvalButton {
+        BenchButton(int shape, int orientation) {
+            super(shape, orientation);
+        }
+
+        boolean hit(Point p) {
+            return isValidClickPosition(p);
+        }
+
+        boolean hit(int x, int y) {
+            return isValidClickPosition(x, y);
+        }
+
+        @Override
+        public Point getLocationOnScreen() {
+            return new Point(0, 0);
+        }
+    }
+
+    @Override
+    public void run(Bench bench) throws Exception {
+        for (int[] shape : SHAPES) {
+            for (int[] size : SIZES) {
+                BenchButton button = new BenchButton(shape[0], shape[1]);
+                button.setSize(size[0], size[1]);
+                Object[] params = {"shape", shapeName(shape), "size", size[0] + "x" + size[1]};
+
+                Point[] points = new Point[POINTS];
+                for (int i = 0; i < POINTS; i++) {
+                    points[i] = new Point((i * 31) % size[0], (i * 17) % size[1]);
+                }
+                int[] next = new int[1];
+                bench.measure("OvalButton.isValidClickPosition", Bench.params(params), 1,
+                        () -> button.hit(points[next[0]++ & (POINTS - 1)]));
+                // what the mouse events use: component coordinates
+                bench.measure("OvalButton.isValidClickPosition(x, y)", Bench.params(params), 1, () -> {
+                    Point p = points[next[0]++ & (POINTS - 1)];
+                    return button.hit(p.x, p.y);
+                });
+
+                BufferedImage image = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = image.createGraphics();
+                bench.measure("OvalButton.paintComponent", Bench.params(params), 1, () -> {
+                    button.paintComponent(g);
+                    return null;
+                });
+                int[] resizes = new int[1];
+                bench.measure("OvalButton.paintComponent after resize", Bench.params(params), 1, () -> {
+                    button.setSize(size[0] - (resizes[0]++ & 1), size[1]);
+                    button.paintComponent(g);
+                    return null;
+                });
+                button.setSize(size[0], size[1]);
+                g.dispose();
+            }
+        }
+    }
+
+    private static String shapeName(int[] shape) {
+        if (shape[0] == OvalButton.SHAPE_OVAL) {
+            return "oval";
+        }
+        return shape[1] == OvalButton.VERTICAL ? "capsule-vertical" : "capsule-horizontal";
+    }
+}
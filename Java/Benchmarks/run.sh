@@ -0,0 +1,23 @@
+#!/bin/bash
+# Builds the Java snippets together with the benchmarks and runs them.
+# Usage: ./run.sh [-o results.json] [logger] [http] [oval]
+# The results are written as JSON (bench-results.json by default) into the current directory.
+# Iterations can be changed with BENCH_OPTS, e.g. BENCH_OPTS="-Dbench.iterations=10 -Dbench.time=2000" ./run.sh
+
+set -e
+DIR="$(cd "$(dirname "$0")" && pwd)"
+JAVA_DIR="$(dirname "$DIR")"
+OUT="$DIR/out"
+
+rm -rf "$OUT"
+mkdir -p "$OUT"
+javac -encoding UTF-8 -d "$OUT" \
+    "$JAVA_DIR"/SimpleLogger/logger/*.java \
+    $(find "$JAVA_DIR/HttpRequest" -name '*.java' ! -name '*Example.java') \
+    "$JAVA_DIR"/ovalButton/*.java \
+    "$JAVA_DIR"/Tests/*StubServer.java \
+    "$DIR"/*.java
+
+# the logger writes its files into ./log
+mkdir -p log
+java -Djava.awt.headless=true $BENCH_OPTS -cp "$OUT" Bench "$@"
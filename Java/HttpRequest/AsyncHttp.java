@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The non-blocking requests of HttpRequest, sent by a single shared java.net.http.HttpClient.
+ * Kept separate because the JDK class java.net.http.HttpRequest has the same simple name as our HttpRequest.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class AsyncHttp {
+    private static final HttpClient CLIENT = newClient(HttpClient.Version.HTTP_1_1);
+
+    /**
+     * The HTTP/2 client, only created when it is first used.
+     */
+    private static final class Http2 {
+        static final HttpClient CLIENT = newClient(HttpClient.Version.HTTP_2);
+    }
+
+    private AsyncHttp() {
+    }
+
+    private static HttpClient newClient(HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Send the request without blocking (see getResponseAsync() of our HttpRequest).
+     *
+     * @param http2 True to send it over HTTP/2 if the server supports it: negotiated with ALPN for https
+     *              and with an "Upgrade: h2c" request for http. Concurrent requests to the same origin then
+     *              share one connection. Servers without HTTP/2 get HTTP/1.1 requests.
+     * @param timeoutMillis Time until the headers of the response must arrive (0 means no timeout).
+     * @return The response body, or an IOException if the request fails or the status is 400 or more.
+     */
+    static CompletableFuture<String> send(String method, String url, String parameters, boolean http2,
+                                          long timeoutMillis) {
+        HttpRequest request;
+        try {
+            request = build(method, url, parameters, timeoutMillis);
+        }
+        catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL: " + url, e));
+        }
+        HttpClient client = http2 ? Http2.CLIENT : CLIENT;
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() >= 400) {
+                throw new CompletionException(new IOException("Server returned HTTP response code: "
+                        + response.statusCode() + " for URL: " + response.uri()));
+            }
+            return response.body();
+        });
+    }
+
+    private static HttpRequest build(String method, String url, String parameters, long timeoutMillis) {
+        if (method.equals("GET") && parameters.length() != 0) {
+            url = url + "?" + parameters;
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url));
+        if (method.equals("POST")) {
+            builder.header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(parameters));
+        }
+        else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        if (timeoutMillis > 0) {
+            builder.timeout(Duration.ofMillis(timeoutMillis));
+        }
+        return builder.build();
+    }
+}
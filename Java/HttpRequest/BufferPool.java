@@ -0,0 +1,45 @@
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size buffers for streaming request and response bodies, reused between requests so that
+ * streaming a body of any size costs the same memory and allocates nothing once the pool is warm.
+ * At most MAX_POOLED buffers are kept, more can be in use at once but are not kept when released.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class BufferPool {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED = 64;
+
+    private static final Queue<ByteBuffer> FREE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private BufferPool() {
+    }
+
+    /**
+     * @return A cleared buffer of BUFFER_SIZE bytes, backed by an array. Must be given back with release().
+     */
+    static ByteBuffer acquire() {
+        ByteBuffer buffer = FREE.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    static void release(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            FREE.add(buffer);
+        }
+        else {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops sending requests to a host that keeps failing (see HttpRequest.setCircuitBreaker()), so callers fail fast
+ * with a CircuitOpenException instead of waiting for timeouts, and the host gets time to recover.
+ * <p>
+ * Each host (host:port) has its own breaker. After failureThreshold failed requests in a row it opens and
+ * rejects all the requests for openMillis. Then one trial request is let through: if it succeeds the breaker
+ * closes, otherwise it stays open for another openMillis. Connection errors, timeouts and statuses of
+ * 500 or more count as failures, other responses (also 4xx) as successes.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of the breaker of a host.
+     */
+    public enum State {
+        /** Requests are sent. */
+        CLOSED,
+        /** Requests are rejected. */
+        OPEN,
+        /** A trial request is in progress, the others are rejected. */
+        HALF_OPEN
+    }
+
+    /**
+     * Breaker of a single host, guarded by its own lock.
+     */
+    private static final class Host {
+        State state = State.CLOSED;
+        int failures;
+        long since; // when the breaker opened or the trial request started
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    /**
+     * @param failureThreshold Number of failed requests in a row that open the breaker of a host.
+     * @param openMillis Time the breaker stays open before a trial request is let through.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("At least one failure and a non-negative open time are needed.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * @param url Any URL of the host.
+     * @return State of the breaker of the host (CLOSED if no request has been sent to it).
+     */
+    public State getState(String url) throws MalformedURLException {
+        Host host = hosts.get(hostOf(url));
+        if (host == null) {
+            return State.CLOSED;
+        }
+        synchronized (host) {
+            return host.state;
+        }
+    }
+
+    /**
+     * @return Number of requests rejected because the breaker of their host was open.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Number of times the breaker of a host opened.
+     */
+    public long getOpenedCount() {
+        return opened.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker[hosts=" + hosts.size() + ", opened=" + getOpenedCount() + ", rejected="
+                + getRejectedCount() + "]";
+    }
+
+    /**
+     * @return Key of the host of the URL, as host:port.
+     */
+    static String hostOf(String url) throws MalformedURLException {
+        URL u = new URL(url);
+        return u.getHost() + ":" + (u.getPort() == -1 ? u.getDefaultPort() : u.getPort());
+    }
+
+    /**
+     * Call before sending a request to the host, report the outcome with success() or failure().
+     *
+     * @throws CircuitOpenException If the breaker of the host is open.
+     */
+    void acquire(String host) throws CircuitOpenException {
+        Host h = hosts.computeIfAbsent(host, key -> new Host());
+        synchronized (h) {
+            if (h.state == State.CLOSED) {
+                return;
+            }
+            // a trial request that never reported back does not keep the breaker half open forever
+            long waited = System.nanoTime() - h.since;
+            if (waited < openNanos) {
+                rejected.increment();
+                throw new CircuitOpenException(host, TimeUnit.NANOSECONDS.toMillis(openNanos - waited));
+            }
+            h.state = State.HALF_OPEN;
+            h.since = System.nanoTime();
+        }
+    }
+
+    void success(String host) {
+        Host h = hosts.get(host);
+        synchronized (h) {
+            h.state = State.CLOSED;
+            h.failures = 0;
+        }
+    }
+
+    void failure(String host) {
+        Host h = hosts.get(host);
+        synchronized (h) {
+            h.failures++;
+            if (h.state == State.HALF_OPEN || (h.state == State.CLOSED && h.failures >= failureThreshold)) {
+                h.state = State.OPEN;
+                h.since = System.nanoTime();
+                opened.increment();
+            }
+        }
+    }
+
+    /**
+     * @return True if the failure says that the host is unhealthy, not that the request was wrong.
+     */
+    static boolean isFailure(IOException e) {
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).getStatusCode() >= 500;
+        }
+        if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+            return false; // the calling thread was interrupted
+        }
+        return !(e instanceof FileNotFoundException || e instanceof MalformedURLException);
+    }
+}
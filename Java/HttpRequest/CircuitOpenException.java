@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of its host is open (see CircuitBreaker).
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+
+    /**
+     * @param host The host, as host:port.
+     * @param retryInMillis Time until the next request to the host is let through.
+     */
+    public CircuitOpenException(String host, long retryInMillis) {
+        super("Too many failed requests to " + host + ", the next one is let through in " + retryInMillis + " ms.");
+        this.host = host;
+    }
+
+    /**
+     * @return The host, as host:port.
+     */
+    public String getHost() {
+        return host;
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes compressed response bodies (Content-Encoding gzip or deflate) while they are read,
+ * so a compressed response is never held in memory as a whole.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class ContentEncoding {
+    /** Value of the Accept-Encoding header for the encodings decode() understands. */
+    static final String ACCEPTED = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * @param body The body as it was received.
+     * @param encoding Value of the Content-Encoding header (may be null).
+     * @return The decoded body, empty if the body is empty (e.g. the response to a HEAD request, 204 or 304).
+     * @throws IOException If the encoding is not supported or the body is not valid for it.
+     */
+    static InputStream decode(InputStream body, String encoding) throws IOException {
+        if (encoding == null) {
+            return body;
+        }
+        switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "":
+            case "identity":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                BufferedInputStream in = new BufferedInputStream(body, BUFFER_SIZE);
+                return isEmpty(in) ? in : new GZIPInputStream(in, BUFFER_SIZE);
+            case "deflate":
+                return inflate(new BufferedInputStream(body, BUFFER_SIZE));
+            default:
+                body.close();
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Responses without a body keep the Content-Encoding header of the full response, but there is no
+     * compressed data to decode.
+     */
+    private static boolean isEmpty(BufferedInputStream in) throws IOException {
+        in.mark(1);
+        boolean empty = in.read() == -1;
+        in.reset();
+        return empty;
+    }
+
+    /**
+     * "deflate" should be zlib data, but some servers send raw deflate data, so the header is checked first.
+     */
+    private static InputStream inflate(BufferedInputStream in) throws IOException {
+        if (isEmpty(in)) {
+            return in;
+        }
+        in.mark(2);
+        int cmf = in.read();
+        int flg = in.read();
+        in.reset();
+        boolean zlib = cmf != -1 && flg != -1 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    inflater.end(); // not ended by InflaterInputStream when passed in
+                }
+                super.close();
+            }
+        };
+    }
+}
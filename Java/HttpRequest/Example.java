@@ -26,7 +26,7 @@ public class Example {
         System.out.println("Example with parameters: \n");
 
         Map<String, String> params = new HashMap<>();
-        params.put("search_query", "pink+floyd");
+        params.put("search_query", "pink floyd");
         // Constructs : https://www.youtube.com/results?search_query=pink+floyd
         try {
             String response = HttpRequest.getResponse("GET", "https://www.youtube.com/results", HttpRequest.createParameters(params));
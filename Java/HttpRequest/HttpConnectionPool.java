@@ -0,0 +1,229 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Keeps the connections of an HttpRequestClient open between requests, separately for each host.
+ * At most maxConnectionsPerHost connections to the same host are in use or idle at once; further requests
+ * wait until one is released. Idle connections are closed after keepAliveMillis by a background thread.
+ * The most recently used idle connection is reused first, so the connections that are not needed any more
+ * become idle for long enough to be closed.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class HttpConnectionPool implements Closeable {
+
+    /**
+     * Connections to a single scheme://host:port.
+     */
+    static final class Host {
+        final String scheme;
+        final String name;
+        final int port;
+        final Semaphore permits;
+        final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+        Host(String scheme, String name, int port, int maxConnections) {
+            this.scheme = scheme;
+            this.name = name;
+            this.port = port;
+            permits = new Semaphore(maxConnections, true);
+        }
+    }
+
+    private final int maxConnectionsPerHost;
+    private final long keepAliveMillis;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private volatile boolean closed;
+
+    HttpConnectionPool(int maxConnectionsPerHost, long keepAliveMillis) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.keepAliveMillis = keepAliveMillis;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "http-pool-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(keepAliveMillis / 2, 100);
+        reaper.scheduleWithFixedDelay(this::closeExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take an idle connection to the host or open a new one. Waits if the host already has
+     * maxConnectionsPerHost connections in use. The connection must be given back with release().
+     *
+     * @param connectTimeout Timeout for opening a new connection in milliseconds (0 for none).
+     * @param readTimeout Timeout for reading from the connection in milliseconds (0 for none).
+     */
+    PooledConnection acquire(String scheme, String name, int port, int connectTimeout, int readTimeout)
+            throws IOException {
+        if (closed) {
+            throw new IOException("The client is closed.");
+        }
+        Host host = hosts.computeIfAbsent(scheme + "://" + name + ":" + port,
+                key -> new Host(scheme, name, port, maxConnectionsPerHost));
+        try {
+            host.permits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + name + ".");
+        }
+        try {
+            PooledConnection connection = pollIdle(host);
+            if (connection != null) {
+                reused.increment();
+            }
+            else {
+                connection = open(host, connectTimeout);
+                opened.increment();
+            }
+            connection.setReadTimeout(readTimeout);
+            return connection;
+        }
+        catch (IOException | RuntimeException e) {
+            host.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give the connection back to the pool.
+     *
+     * @param connection Connection from acquire().
+     * @param reusable False if the connection must be closed, e.g. because the response was not read completely.
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        Host host = connection.host;
+        if (reusable && !closed && connection.isOpen()) {
+            connection.setLastUsed(System.currentTimeMillis());
+            synchronized (host) {
+                host.idle.addFirst(connection);
+            }
+        }
+        else {
+            connection.close();
+        }
+        host.permits.release();
+    }
+
+    long getOpenedCount() {
+        return opened.sum();
+    }
+
+    long getReusedCount() {
+        return reused.sum();
+    }
+
+    /**
+     * @return Number of connections that are currently idle.
+     */
+    int getIdleCount() {
+        int count = 0;
+        for (Host host : hosts.values()) {
+            synchronized (host) {
+                count += host.idle.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Close all the idle connections. Connections that are in use are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reaper.shutdownNow();
+        for (Host host : hosts.values()) {
+            List<PooledConnection> toClose;
+            synchronized (host) {
+                toClose = new ArrayList<>(host.idle);
+                host.idle.clear();
+            }
+            toClose.forEach(PooledConnection::close);
+        }
+    }
+
+    private PooledConnection pollIdle(Host host) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            PooledConnection connection;
+            synchronized (host) {
+                connection = host.idle.pollFirst();
+            }
+            if (connection == null) {
+                return null;
+            }
+            if (connection.isOpen() && now - connection.getLastUsed() < keepAliveMillis) {
+                return connection;
+            }
+            connection.close();
+        }
+    }
+
+    private void closeExpired() {
+        long deadline = System.currentTimeMillis() - keepAliveMillis;
+        for (Host host : hosts.values()) {
+            List<PooledConnection> expired = new ArrayList<>();
+            synchronized (host) {
+                // the oldest connections are at the end
+                Iterator<PooledConnection> iterator = host.idle.descendingIterator();
+                while (iterator.hasNext()) {
+                    PooledConnection connection = iterator.next();
+                    if (connection.getLastUsed() > deadline) {
+                        break;
+                    }
+                    iterator.remove();
+                    expired.add(connection);
+                }
+            }
+            expired.forEach(PooledConnection::close);
+        }
+    }
+
+    private static PooledConnection open(Host host, int connectTimeout) throws IOException {
+        // opened through a channel, so files can be sent to it with FileChannel.transferTo()
+        Socket socket = SocketChannel.open().socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host.name, host.port), connectTimeout);
+            if (host.scheme.equals("https")) {
+                SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, host.name, host.port, true);
+                SSLParameters parameters = ssl.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                ssl.setSSLParameters(parameters);
+                ssl.startHandshake();
+                socket = ssl;
+            }
+            return new PooledConnection(host, socket);
+        }
+        catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+}
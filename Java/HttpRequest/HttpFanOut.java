@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many blocking HttpRequest.getResponse() calls at once, each on its own virtual thread, so that
+ * fanning out to hundreds or thousands of URLs does not need a pool of platform threads.
+ * At most maxPerHost requests to the same host are in progress at once (the others wait without holding
+ * a connection) and the whole batch has a deadline: requests that are still waiting or running when it
+ * passes are cancelled and their connections closed.
+ * <p>
+ * Virtual threads need Java 21 or newer. On older versions every request runs on a new platform thread
+ * instead, which works the same way but costs more memory per request.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class HttpFanOut {
+    /** Default maximum number of requests to the same host that are in progress at once. */
+    public static final int DEFAULT_MAX_PER_HOST = 64;
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private final int maxPerHost;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxPerHost Maximum number of requests to the same host that are in progress at once.
+     *                   The limit is shared by all the batches of this object.
+     */
+    public HttpFanOut(int maxPerHost) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("At least one request per host must be allowed.");
+        }
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * @see #HttpFanOut(int)
+     * At most DEFAULT_MAX_PER_HOST requests to the same host are in progress at once.
+     */
+    public HttpFanOut() {
+        this(DEFAULT_MAX_PER_HOST);
+    }
+
+    /**
+     * @return True if the requests run on virtual threads, false if this Java version does not have them.
+     */
+    public static boolean usesVirtualThreads() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Send all the requests (see HttpRequest.getResponse()) and wait until they are done or the deadline passes.
+     * The connect and read timeouts of each request are set to the time left until the deadline.
+     *
+     * @param requests Requests to send.
+     * @param timeoutMillis Time the whole batch may take.
+     * @return One future per request, in the same order. All of them are done: with the response, with the
+     *         exception of the request (ExecutionException from get()), or cancelled (CancellationException)
+     *         if the request had not finished before the deadline.
+     * @throws InterruptedException If the calling thread is interrupted while waiting, all the requests
+     *                              are cancelled.
+     */
+    public List<Future<String>> getAll(List<HttpRequest.Request> requests, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Task> tasks = new ArrayList<>(requests.size());
+        for (HttpRequest.Request request : requests) {
+            tasks.add(new Task(request, deadline));
+        }
+        ExecutorService executor = newExecutor();
+        try {
+            List<Future<String>> results = executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isCancelled()) {
+                    // invokeAll() only interrupts the thread, a blocking socket read needs the connection closed
+                    tasks.get(i).abort();
+                }
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            tasks.forEach(Task::abort);
+            throw e;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A single request of a batch.
+     */
+    private final class Task implements Callable<String> {
+        private final HttpRequest.Request request;
+        private final long deadline;
+        private volatile boolean aborted;
+        private volatile HttpURLConnection connection;
+
+        Task(HttpRequest.Request request, long deadline) {
+            this.request = request;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public String call() throws Exception {
+            Semaphore permits = hosts.computeIfAbsent(hostOf(request.getUrl()), host -> new Semaphore(maxPerHost));
+            if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new CancellationException("Deadline passed while waiting for the host.");
+            }
+            try {
+                if (aborted) {
+                    throw new CancellationException("Deadline passed before the request started.");
+                }
+                return HttpRequest.getResponse(request.getMethod(), request.getUrl(), request.getParameters(),
+                        this::configure);
+            }
+            finally {
+                permits.release();
+            }
+        }
+
+        private void configure(HttpURLConnection con) {
+            connection = con;
+            if (aborted) {
+                // aborted while the request was starting, the timer of the request is finished by HttpRequest
+                throw new CancellationException("Deadline passed before connecting.");
+            }
+            int remaining = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            con.setConnectTimeout(remaining);
+            con.setReadTimeout(remaining);
+        }
+
+        void abort() {
+            aborted = true;
+            HttpURLConnection con = connection;
+            if (con != null) {
+                con.disconnect();
+            }
+        }
+    }
+
+    private static String hostOf(String url) throws IOException {
+        URL u = new URL(url);
+        return u.getHost() + ":" + (u.getPort() == -1 ? u.getDefaultPort() : u.getPort());
+    }
+
+    private static ExecutorService newExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                // fall back to platform threads below
+            }
+        }
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "http-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up at run time, so this also compiles
+     * and runs on Java versions without virtual threads.
+     */
+    private static Method virtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the timings of the requests per host: a latency histogram of each phase (see HttpTimings.Phase)
+ * and counters of the requests, errors, statuses and bytes. Register it with HttpRequest.addListener() and
+ * look at snapshot() to find the slow hosts and the phase they are slow in.
+ *
+ * <pre>
+ * HttpMetrics metrics = new HttpMetrics();
+ * HttpRequest.addListener(metrics);
+ * ...
+ * for (HttpMetrics.HostSnapshot host : metrics.snapshot()) {
+ *     System.out.println(host);
+ * }
+ * </pre>
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class HttpMetrics implements HttpRequestListener {
+
+    /**
+     * Metrics of a single host.
+     */
+    private static final class Host {
+        final LatencyHistogram[] phases = new LatencyHistogram[HttpTimings.Phase.values().length];
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytesSent = new LongAdder();
+        final LongAdder bytesReceived = new LongAdder();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        Host() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    @Override
+    public void requestCompleted(HttpTimings timings) {
+        Host host = hosts.computeIfAbsent(timings.getHost(), key -> new Host());
+        host.requests.increment();
+        if (timings.getError() != null) {
+            host.errors.increment();
+        }
+        if (timings.getStatus() >= 0) {
+            host.statuses.computeIfAbsent(timings.getStatus(), key -> new LongAdder()).increment();
+        }
+        host.bytesSent.add(timings.getBytesSent());
+        host.bytesReceived.add(timings.getBytesReceived());
+        for (HttpTimings.Phase phase : HttpTimings.Phase.values()) {
+            host.phases[phase.ordinal()].record(timings.getNanos(phase));
+        }
+    }
+
+    /**
+     * @return The metrics of every host so far, sorted by host.
+     */
+    public List<HostSnapshot> snapshot() {
+        List<HostSnapshot> snapshot = new ArrayList<>(hosts.size());
+        for (Map.Entry<String, Host> entry : new TreeMap<>(hosts).entrySet()) {
+            snapshot.add(new HostSnapshot(entry.getKey(), entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Remove the metrics of all the hosts.
+     */
+    public void clear() {
+        hosts.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("HttpMetrics");
+        for (HostSnapshot host : snapshot()) {
+            builder.append("\n  ").append(host);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The metrics of a host at the time of snapshot(), they do not change afterwards.
+     */
+    public static final class HostSnapshot {
+        private final String host;
+        private final long requests;
+        private final long errors;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+        private final long[][] phases;
+
+        private HostSnapshot(String host, Host metrics) {
+            this.host = host;
+            requests = metrics.requests.sum();
+            errors = metrics.errors.sum();
+            bytesSent = metrics.bytesSent.sum();
+            bytesReceived = metrics.bytesReceived.sum();
+            metrics.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+            phases = new long[metrics.phases.length][];
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = metrics.phases[i].snapshot();
+            }
+        }
+
+        /**
+         * @return The host, as host:port.
+         */
+        public String getHost() {
+            return host;
+        }
+
+        public long getRequestCount() {
+            return requests;
+        }
+
+        /**
+         * @return Number of failed requests, including the ones with an error status.
+         */
+        public long getErrorCount() {
+            return errors;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * @return Number of responses with each status.
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return Collections.unmodifiableMap(statuses);
+        }
+
+        /**
+         * @param phase The phase, or TOTAL for the whole requests.
+         * @param percentile Between 0 and 100, e.g. 99.9.
+         * @return Time of the phase in nanoseconds that the given percentage of the requests did not exceed
+         *         (accurate to about 12.5%), 0 if there were no requests.
+         */
+        public long getPercentileNanos(HttpTimings.Phase phase, double percentile) {
+            return LatencyHistogram.percentile(phases[phase.ordinal()], percentile);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(host).append(": requests=").append(requests).append(", errors=").append(errors)
+                    .append(", statuses=").append(statuses).append(", sent=").append(bytesSent)
+                    .append(", received=").append(bytesReceived);
+            for (HttpTimings.Phase phase : HttpTimings.Phase.values()) {
+                builder.append(String.format(", %s p50/p99=%.2f/%.2f ms", phase,
+                        getPercentileNanos(phase, 50) / 1e6, getPercentileNanos(phase, 99) / 1e6));
+            }
+            return builder.toString();
+        }
+    }
+}
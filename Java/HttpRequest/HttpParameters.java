@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Builds the parameters of a request (query string or form body): key=value&amp;key=value...
+ * Keys and values are URL encoded (application/x-www-form-urlencoded, UTF-8) straight into a single
+ * byte buffer, without creating a String for each parameter. The same key can be added more than once.
+ *
+ * <pre>
+ * String parameters = new HttpParameters().add("q", "pink floyd").add("tag", "rock").add("tag", "70s").toString();
+ * </pre>
+ *
+ * A builder can be cleared and reused. For form bodies too large to keep in memory, create the builder
+ * with an OutputStream: the encoded parameters are then written to the stream whenever the buffer fills up.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class HttpParameters {
+    private static final int DEFAULT_CAPACITY = 256;
+    /** The most bytes one step of encode() writes: a surrogate pair, %XX%XX%XX%XX. */
+    private static final int MAX_ENCODED_CHAR = 12;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    /** What each ASCII char is written as if it does not need to be escaped, 0 if it does. */
+    private static final byte[] PLAIN = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            PLAIN[c] = (byte) c;
+            PLAIN[Character.toUpperCase(c)] = (byte) Character.toUpperCase(c);
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            PLAIN[c] = (byte) c;
+        }
+        PLAIN['.'] = '.';
+        PLAIN['-'] = '-';
+        PLAIN['*'] = '*';
+        PLAIN['_'] = '_';
+        PLAIN[' '] = '+';
+    }
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int count;
+    private long written;
+    private boolean empty = true;
+
+    /**
+     * @param capacity Expected length of the encoded parameters, the buffer grows if they are longer.
+     */
+    public HttpParameters(int capacity) {
+        buffer = new byte[Math.max(capacity, MAX_ENCODED_CHAR)];
+        out = null;
+    }
+
+    /**
+     * @see #HttpParameters(int)
+     */
+    public HttpParameters() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Streams the encoded parameters to out, e.g. the body of a POST request, through a fixed buffer.
+     * Call flush() after the last parameter. toString() is not available.
+     *
+     * @param out Where to write the parameters.
+     * @param bufferSize Size of the buffer.
+     */
+    public HttpParameters(OutputStream out, int bufferSize) {
+        this.out = out;
+        buffer = new byte[Math.max(bufferSize, MAX_ENCODED_CHAR)];
+    }
+
+    /**
+     * Convenient function for creating the parameters from a map.
+     *
+     * @param parameters Map to form the parameters from.
+     * @return The encoded parameters, empty if the map is empty.
+     */
+    public static String of(Map<String, String> parameters) {
+        return new HttpParameters().addAll(parameters).toString();
+    }
+
+    /**
+     * Add a parameter, after the ones added before (also if the key was already added).
+     *
+     * @param key Name of the parameter.
+     * @param value Value of the parameter, or null to add just the key (without =).
+     * @return This builder.
+     * @throws UncheckedIOException If the builder streams to an OutputStream and writing fails.
+     */
+    public HttpParameters add(String key, String value) {
+        // enough room if nothing needs to be escaped
+        ensureCapacity(key.length() + (value == null ? 0 : value.length()) + 2);
+        if (!empty) {
+            buffer[count++] = '&';
+        }
+        empty = false;
+        encode(key);
+        if (value != null) {
+            if (count == buffer.length) {
+                makeRoom();
+            }
+            buffer[count++] = '=';
+            encode(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add the same key with each of the values.
+     *
+     * @return This builder.
+     * @see #add(String, String)
+     */
+    public HttpParameters add(String key, Iterable<String> values) {
+        for (String value : values) {
+            add(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Add all the entries of the map, in the order of the map.
+     *
+     * @return This builder.
+     * @see #add(String, String)
+     */
+    public HttpParameters addAll(Map<String, String> parameters) {
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * @return True if no parameter has been added.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return Number of bytes (also characters) of the encoded parameters, including the ones already streamed.
+     */
+    public long length() {
+        return written + count;
+    }
+
+    /**
+     * Remove all the parameters, keeping the buffer for reuse.
+     *
+     * @return This builder.
+     */
+    public HttpParameters clear() {
+        count = 0;
+        written = 0;
+        empty = true;
+        return this;
+    }
+
+    /**
+     * If the builder streams to an OutputStream, write the parameters that have not been streamed yet
+     * and flush the stream. Does nothing otherwise.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void flush() throws IOException {
+        if (out == null) {
+            return;
+        }
+        out.write(buffer, 0, count);
+        written += count;
+        count = 0;
+        out.flush();
+    }
+
+    /**
+     * Write the encoded parameters to the stream, without creating a String.
+     *
+     * @param stream Where to write the parameters.
+     * @throws IOException If writing fails.
+     * @throws IllegalStateException If the builder streams to an OutputStream.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        checkBuffered();
+        stream.write(buffer, 0, count);
+    }
+
+    /**
+     * @return The encoded parameters, e.g. for HttpRequest.getResponse().
+     * @throws IllegalStateException If the builder streams to an OutputStream.
+     */
+    @Override
+    public String toString() {
+        checkBuffered();
+        return new String(buffer, 0, count, StandardCharsets.ISO_8859_1);
+    }
+
+    private void checkBuffered() {
+        if (out != null) {
+            throw new IllegalStateException("The parameters were streamed to an OutputStream.");
+        }
+    }
+
+    private void encode(String s) {
+        int length = s.length();
+        int i = 0;
+        if (count + length <= buffer.length) {
+            // fast path for the chars that are not escaped, usually all of them
+            byte[] buffer = this.buffer;
+            int count = this.count;
+            for (; i < length; i++) {
+                char c = s.charAt(i);
+                byte plain;
+                if (c >= 128 || (plain = PLAIN[c]) == 0) {
+                    break;
+                }
+                buffer[count++] = plain;
+            }
+            this.count = count;
+        }
+        if (i < length) {
+            escape(s, i);
+        }
+    }
+
+    private void escape(String s, int from) {
+        byte[] buffer = this.buffer;
+        int count = this.count;
+        int limit = buffer.length - MAX_ENCODED_CHAR;
+        for (int i = from; i < s.length(); i++) {
+            if (count > limit) {
+                this.count = count;
+                makeRoom();
+                buffer = this.buffer;
+                count = this.count;
+                limit = buffer.length - MAX_ENCODED_CHAR;
+            }
+            char c = s.charAt(i);
+            if (c < 0x80 && PLAIN[c] != 0) {
+                buffer[count++] = PLAIN[c];
+            }
+            else if (c < 0x80) {
+                count = escape(buffer, count, c);
+            }
+            else if (c < 0x800) {
+                count = escape(buffer, count, 0xC0 | (c >> 6));
+                count = escape(buffer, count, 0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                count = escape(buffer, count, 0xF0 | (codePoint >> 18));
+                count = escape(buffer, count, 0x80 | ((codePoint >> 12) & 0x3F));
+                count = escape(buffer, count, 0x80 | ((codePoint >> 6) & 0x3F));
+                count = escape(buffer, count, 0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                count = escape(buffer, count, '?'); // not valid UTF-16, same as String.getBytes()
+            }
+            else {
+                count = escape(buffer, count, 0xE0 | (c >> 12));
+                count = escape(buffer, count, 0x80 | ((c >> 6) & 0x3F));
+                count = escape(buffer, count, 0x80 | (c & 0x3F));
+            }
+        }
+        this.count = count;
+    }
+
+    private static int escape(byte[] buffer, int count, int b) {
+        buffer[count] = '%';
+        buffer[count + 1] = HEX[(b >> 4) & 0x0F];
+        buffer[count + 2] = HEX[b & 0x0F];
+        return count + 3;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (count + needed > buffer.length && out == null) {
+            grow(count + needed);
+        }
+        else if (count + MAX_ENCODED_CHAR > buffer.length) {
+            makeRoom();
+        }
+    }
+
+    /**
+     * Make room for at least MAX_ENCODED_CHAR more bytes: stream the buffer out, or grow it.
+     */
+    private void makeRoom() {
+        if (out == null) {
+            grow(count + MAX_ENCODED_CHAR);
+            return;
+        }
+        try {
+            out.write(buffer, 0, count);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written += count;
+        count = 0;
+    }
+
+    private void grow(int minCapacity) {
+        byte[] grown = new byte[Math.max(minCapacity, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, count);
+        buffer = grown;
+    }
+}
@@ -1,37 +1,281 @@
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 
 /**
  * This class provides two useful method for creating and executing POST and
  * GET requests. The response returned is of String type but it can be
  * converted later, say to JSON object.
+ * Every request opens and closes its own connection, use HttpRequestClient
+ * for many requests to the same hosts.
  *
  * @author Luka Kralj
  * @version 22 December 2018
  */
 public class HttpRequest {
+    /** Default maximum number of requests of getAll() that are in progress at once. */
+    public static final int DEFAULT_MAX_CONCURRENT = 64;
+
+    private static volatile boolean responseCompression = true;
+    private static volatile boolean requestCompression = false;
+    private static volatile HttpResponseCache responseCache;
+    private static volatile boolean requestCoalescing = true;
+    private static volatile boolean http2 = false;
+    private static volatile int connectTimeout = 10_000;
+    private static volatile int readTimeout = 30_000;
+    private static volatile long totalTimeout = 0;
+    private static volatile long asyncTimeout = 30_000;
+    private static volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private static volatile CircuitBreaker circuitBreaker;
+    private static final LongAdder retries = new LongAdder();
+    private static final List<HttpRequestListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final SingleFlight IN_FLIGHT = new SingleFlight();
+    /** Size of the chunks of request bodies whose length is not known in advance. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Reads the body of a response, see getResponseStream().
+     *
+     * @param <T> Result of reading the body.
+     */
+    public interface BodyHandler<T> {
+        /**
+         * @param body The body of the response, closed after this method returns.
+         * @param charset Charset of the response (from the Content-Type header, UTF-8 if none is given).
+         * @return Anything that was read from the body.
+         */
+        T handle(InputStream body, Charset charset) throws IOException;
+    }
+
+    /**
+     * Receives the body of a response in parts, see getResponseChunks().
+     */
+    public interface ChunkHandler {
+        /**
+         * @param chunk The next part of the body. The buffer is reused for the next part, so it must not
+         *              be kept after this method returns.
+         */
+        void accept(ByteBuffer chunk) throws IOException;
+    }
+
+    /**
+     * A request for getAll(): method, base URL and parameters, as they would be passed to getResponse().
+     */
+    public static final class Request {
+        private final String method;
+        private final String url;
+        private final String parameters;
+
+        /**
+         * @param method Request method: GET or POST.
+         * @param url Base URL of the request.
+         * @param parameters Valid string that includes the request parameters.
+         */
+        public Request(String method, String url, String parameters) {
+            this.method = method;
+            this.url = url;
+            this.parameters = parameters;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getParameters() {
+            return parameters;
+        }
+    }
 
     /**
      * Convenient function for creating parameters string from a map. Parameters
-     * are formed in this way: key=value?key=value?...
+     * are formed in this way: key=value&key=value&... Keys and values are URL encoded,
+     * so they must not be encoded already. Use HttpParameters to build the parameters
+     * directly, e.g. with repeated keys.
      *
      * @param postArguments Map to form requests parameters from.
-     * @return String of all paramters concatenated together.
+     * @return String of all paramters concatenated together (empty if the map is empty).
      */
     public static String createParameters(Map<String, String> postArguments) {
-        StringBuilder builder = new StringBuilder();
-        for (String key : postArguments.keySet()) {
-            builder.append(key);
-            builder.append("=");
-            builder.append(postArguments.get(key));
-            builder.append("&");
-        }
-        return builder.substring(0, builder.length() - 1); // remove final &
+        return HttpParameters.of(postArguments);
+    }
+
+    /**
+     * Set whether the server may send compressed responses. If enabled, requests accept gzip and deflate
+     * and compressed responses are decoded while they are read, for all the getResponse methods.
+     *
+     * @param enabled True to accept compressed responses (the default), false to always get them uncompressed.
+     */
+    public static void setResponseCompression(boolean enabled) {
+        responseCompression = enabled;
+    }
+
+    /**
+     * Set whether POST and PUT bodies are sent compressed (gzip, with the Content-Encoding header).
+     * Only enable this for servers that accept compressed requests, many do not.
+     *
+     * @param enabled True to compress the request bodies, false to send them as they are (the default).
+     */
+    public static void setRequestCompression(boolean enabled) {
+        requestCompression = enabled;
+    }
+
+    /**
+     * Set the cache for the GET requests of getResponse(). The other methods and the streaming
+     * variants always go to the server.
+     *
+     * @param cache The cache, e.g. new HttpResponseCache(16 * 1024 * 1024), or null for no caching (the default).
+     */
+    public static void setResponseCache(HttpResponseCache cache) {
+        responseCache = cache;
+    }
+
+    /**
+     * Set whether identical GET requests of getResponse() that are in progress at the same time share
+     * a single request: the first one goes to the server and the others wait for its response, instead of
+     * all of them hitting the server at once (e.g. when a popular cached response expires). Requests of
+     * HttpFanOut have their own deadline, so they are never shared.
+     *
+     * @param enabled True to share identical GET requests (the default), false to always send each of them.
+     */
+    public static void setRequestCoalescing(boolean enabled) {
+        requestCoalescing = enabled;
+    }
+
+    /**
+     * @return Number of GET requests that were not sent because they got the response of an identical
+     *         request that was already in progress.
+     */
+    public static long getCoalescedCount() {
+        return IN_FLIGHT.getSharedCount();
+    }
+
+    /**
+     * Set whether getResponseAsync() and getAll() use HTTP/2 when the server supports it (with ALPN for https,
+     * with an "Upgrade: h2c" request for http). Concurrent requests to the same origin are then multiplexed over
+     * a single connection instead of one connection each. Servers without HTTP/2 get HTTP/1.1 requests, as before.
+     * The blocking methods always use HTTP/1.1.
+     *
+     * @param enabled True to use HTTP/2 where possible, false to always use HTTP/1.1 (the default).
+     */
+    public static void setHttp2(boolean enabled) {
+        http2 = enabled;
+    }
+
+    /**
+     * @param millis Timeout for opening a connection of the blocking methods (0 means no timeout,
+     *               default is 10 seconds).
+     */
+    public static void setConnectTimeout(int millis) {
+        connectTimeout = millis;
+    }
+
+    /**
+     * @param millis Timeout for each read of the response of the blocking methods (0 means no timeout,
+     *               default is 30 seconds).
+     */
+    public static void setReadTimeout(int millis) {
+        readTimeout = millis;
+    }
+
+    /**
+     * Set the time getResponse() may take as a whole, including the retries and the waits between them.
+     * The connection of a request that is still in progress when it passes is closed and a
+     * SocketTimeoutException is thrown.
+     *
+     * @param millis Total timeout (0 means no timeout, the default).
+     */
+    public static void setTotalTimeout(long millis) {
+        totalTimeout = millis;
+    }
+
+    /**
+     * Set the time a request of getResponseAsync() and getAll() may take until the headers of the response
+     * arrive. The request then completes with an HttpTimeoutException, so a server that does not respond
+     * does not hold one of the getAll() slots forever.
+     *
+     * @param millis Timeout of each non-blocking request (0 means no timeout, default is 30 seconds).
+     */
+    public static void setAsyncTimeout(long millis) {
+        asyncTimeout = millis;
+    }
+
+    /**
+     * Set when getResponse() sends a failed request again, see RetryPolicy.
+     *
+     * @param policy The policy, e.g. new RetryPolicy(3, 100, 2000), or null to send each request only once
+     *               (the default).
+     */
+    public static void setRetryPolicy(RetryPolicy policy) {
+        retryPolicy = policy == null ? RetryPolicy.NONE : policy;
+    }
+
+    /**
+     * Set the circuit breaker of getResponse(), which rejects the requests to hosts that keep failing.
+     *
+     * @param breaker The breaker, e.g. new CircuitBreaker(5, 10_000), or null for none (the default).
+     */
+    public static void setCircuitBreaker(CircuitBreaker breaker) {
+        circuitBreaker = breaker;
+    }
+
+    /**
+     * @return Number of times getResponse() sent a request again after a failure.
+     */
+    public static long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Add a listener that receives the timings of every request of the blocking methods, e.g. an HttpMetrics.
+     * Requests are only measured while there is a listener.
+     *
+     * @param listener The listener.
+     */
+    public static void addListener(HttpRequestListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener A listener added with addListener().
+     */
+    public static void removeListener(HttpRequestListener listener) {
+        LISTENERS.remove(listener);
     }
 
     /**
@@ -43,33 +287,624 @@ public class HttpRequest {
      *                  using createParameters() method for this).
      * @return Response from the server in the string format (can be converted later
      *         to other more convenient formats).
+     * @throws IOException If the request fails, also after the retries of the retry policy (see setRetryPolicy(),
+     *                     setTotalTimeout() and setCircuitBreaker()), or the server responds with an error status.
      */
     public static String getResponse(String method, String url, String parameters) throws IOException {
-        if (method.equals("GET") && parameters.length() != 0) {
-            url = url + "?" + parameters;
+        return getResponse(method, url, parameters, null);
+    }
+
+    /**
+     * @see #getResponse(String, String, String)
+     *
+     * @param configure Called with the connection before it is connected, e.g. to set timeouts
+     *                  (may be null).
+     */
+    static String getResponse(String method, String url, String parameters, Consumer<HttpURLConnection> configure)
+            throws IOException {
+        if (!method.equals("GET")) {
+            return send(method, url, parameters, null, configure, null, null);
+        }
+        HttpResponseCache cache = responseCache;
+        String key = HttpResponseCache.key(method, url, parameters);
+        HttpResponseCache.Entry cached = cache == null ? null : cache.lookup(key);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            cache.hit();
+            return cached.body;
+        }
+        HttpResponseCache.Entry stale = cached != null && cached.canRevalidate() ? cached : null;
+        // a configured call (e.g. an HttpFanOut task) has its own timeouts and may be aborted, so it is not
+        // shared with calls that did not ask for them
+        if (!requestCoalescing || configure != null) {
+            return send(method, url, parameters, null, configure, cache, stale);
+        }
+        return IN_FLIGHT.execute(key, () -> send(method, url, parameters, null, configure, cache, stale));
+    }
+
+    /**
+     * Send the file as the body of a POST or PUT request. The file is streamed to the connection
+     * through a fixed buffer, with a Content-Length, so its size does not matter.
+     * For http URLs, HttpRequestClient sends the file from the kernel without copying it at all.
+     *
+     * @param method Request method: POST or PUT.
+     * @param url URL of the request.
+     * @param body The file to send, it must not change until the request is sent.
+     * @param contentType Value of the Content-Type header, e.g. "application/pdf".
+     * @return Response from the server in the string format.
+     * @throws IOException If the file cannot be read, the request fails or the server responds with an error status.
+     */
+    public static String getResponse(String method, String url, Path body, String contentType) throws IOException {
+        return send(method, url, "", RequestBody.of(body, contentType), null, null, null);
+    }
+
+    /**
+     * Send the bytes between the position and the limit of the buffer as the body of a POST or PUT request,
+     * with a Content-Length. The position of the buffer is not changed.
+     *
+     * @see #getResponse(String, String, Path, String)
+     */
+    public static String getResponse(String method, String url, ByteBuffer body, String contentType)
+            throws IOException {
+        return send(method, url, "", RequestBody.of(body, contentType), null, null, null);
+    }
+
+    /**
+     * Send everything the stream returns as the body of a POST or PUT request, in chunks
+     * (Transfer-Encoding: chunked) as it is read, so the length does not have to be known.
+     * The stream is not closed. It can only be read once, so the request is not retried.
+     *
+     * @see #getResponse(String, String, Path, String)
+     */
+    public static String getResponse(String method, String url, InputStream body, String contentType)
+            throws IOException {
+        return send(method, url, "", RequestBody.of(body, contentType), null, null, null);
+    }
+
+    /**
+     * Sends the request with fetch() within the total timeout, again after a failure the retry policy allows,
+     * and only while the circuit breaker of the host lets the requests through.
+     */
+    private static String send(String method, String url, String parameters, RequestBody body,
+                               Consumer<HttpURLConnection> configure, HttpResponseCache cache,
+                               HttpResponseCache.Entry stale) throws IOException {
+        RetryPolicy retry = retryPolicy;
+        CircuitBreaker breaker = circuitBreaker;
+        String host = breaker == null ? null : CircuitBreaker.hostOf(url);
+        long timeout = totalTimeout;
+        long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        int attempts = body == null || body.isRepeatable() ? retry.attempts(method) : 1;
+        for (int attempt = 1; ; attempt++) {
+            if (breaker != null) {
+                breaker.acquire(host);
+            }
+            Deadline watch = timeout > 0 ? new Deadline(deadline, timeout, configure) : null;
+            try {
+                String response = fetch(method, url, parameters, body, watch != null ? watch : configure,
+                        cache, stale);
+                if (breaker != null) {
+                    breaker.success(host);
+                }
+                return response;
+            }
+            catch (IOException e) {
+                IOException failure = watch != null && watch.expired ? watch.timeout(url, e) : e;
+                if (breaker != null) {
+                    if (CircuitBreaker.isFailure(failure)) {
+                        breaker.failure(host);
+                    }
+                    else {
+                        breaker.success(host);
+                    }
+                }
+                if (attempt >= attempts || !RetryPolicy.isRetryable(failure)) {
+                    throw failure;
+                }
+                long delay = retry.delayMillis(attempt, failure);
+                if (timeout > 0 && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) >= deadline) {
+                    throw failure; // no time left for another attempt
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    InterruptedIOException stopped = new InterruptedIOException("Interrupted while waiting to retry.");
+                    stopped.initCause(failure);
+                    throw stopped;
+                }
+            }
+            finally {
+                if (watch != null) {
+                    watch.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps a single attempt of send() within the total timeout: the timeouts of the connection are limited
+     * to the time left and the connection is closed when it runs out, also in the middle of a slow response.
+     */
+    private static final class Deadline implements Consumer<HttpURLConnection> {
+        /** Closes the connections whose deadline passed, only created when it is first used. */
+        private static final class Watchdog {
+            static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                thread.setName("http-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            static {
+                SCHEDULER.setRemoveOnCancelPolicy(true);
+            }
+        }
+
+        private final long deadline;
+        private final long timeoutMillis;
+        private final Consumer<HttpURLConnection> configure;
+        private volatile ScheduledFuture<?> watchdog;
+        volatile boolean expired;
+
+        Deadline(long deadline, long timeoutMillis, Consumer<HttpURLConnection> configure) {
+            this.deadline = deadline;
+            this.timeoutMillis = timeoutMillis;
+            this.configure = configure;
         }
-        URL u = new URL(url);
 
-        HttpURLConnection con = (HttpURLConnection) u.openConnection();
-        con.setRequestMethod(method);
+        @Override
+        public void accept(HttpURLConnection con) {
+            long left = deadline - System.nanoTime();
+            int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(left)));
+            if (con.getConnectTimeout() == 0 || con.getConnectTimeout() > remaining) {
+                con.setConnectTimeout(remaining);
+            }
+            if (con.getReadTimeout() == 0 || con.getReadTimeout() > remaining) {
+                con.setReadTimeout(remaining);
+            }
+            watchdog = Watchdog.SCHEDULER.schedule(() -> {
+                expired = true;
+                con.disconnect();
+            }, left, TimeUnit.NANOSECONDS);
+            if (configure != null) {
+                configure.accept(con);
+            }
+        }
+
+        void cancel() {
+            ScheduledFuture<?> scheduled = watchdog;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
 
-        if (method.equals("POST")) {
-            con.setDoOutput(true);
-            DataOutputStream out = new DataOutputStream(con.getOutputStream());
-            out.writeBytes(parameters);
-            out.flush();
-            out.close();
+        IOException timeout(String url, IOException cause) {
+            SocketTimeoutException timeout = new SocketTimeoutException("Total timeout of " + timeoutMillis
+                    + " ms exceeded for URL: " + url);
+            timeout.initCause(cause);
+            return timeout;
+        }
+    }
+
+    /**
+     * Sends the request and reads the response. With a cache, the response is stored in it and if there is
+     * a stale response to revalidate, the request is conditional and an unchanged response is taken from the cache.
+     */
+    private static String fetch(String method, String url, String parameters, RequestBody body,
+                                Consumer<HttpURLConnection> configure, HttpResponseCache cache,
+                                HttpResponseCache.Entry stale) throws IOException {
+        Consumer<HttpURLConnection> conditional = configure;
+        if (stale != null) {
+            conditional = con -> {
+                if (configure != null) {
+                    configure.accept(con);
+                }
+                if (stale.etag != null) {
+                    con.setRequestProperty("If-None-Match", stale.etag);
+                }
+                if (stale.lastModified != null) {
+                    con.setRequestProperty("If-Modified-Since", stale.lastModified);
+                }
+            };
+        }
+        RequestTimer timer = RequestTimer.start(LISTENERS, method, url);
+        HttpURLConnection con = open(method, url, parameters, body, conditional, timer);
+        if (stale != null && status(con, timer) == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            cache.revalidated(stale, con.getHeaderField("Cache-Control"), con.getExpiration());
+            con.disconnect();
+            if (timer != null) {
+                timer.finish(null);
+            }
+            return stale.body;
         }
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-        String inputLine;
         StringBuilder content = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            content.append(inputLine);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(body(con, timer)))) {
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                content.append(inputLine);
+            }
         }
-        in.close();
 
         con.disconnect();
-        return content.toString();
+        String response = content.toString();
+        if (cache != null) {
+            cache.miss();
+            cache.store(HttpResponseCache.key(method, url, parameters), response, con.getHeaderField("Cache-Control"),
+                    con.getExpiration(), con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"));
+        }
+        return response;
+    }
+
+    /**
+     * Same as getResponse(), but the body is not read into memory. The handler reads it straight from
+     * the connection, e.g. to parse a large JSON response as a stream.
+     *
+     * @param method Request method: GET or POST.
+     * @param url Base URL of the request.
+     * @param parameters Valid string that includes the request parameters.
+     * @param handler Reads the body.
+     * @return Whatever the handler returned.
+     */
+    public static <T> T getResponseStream(String method, String url, String parameters, BodyHandler<T> handler)
+            throws IOException {
+        RequestTimer timer = RequestTimer.start(LISTENERS, method, url);
+        HttpURLConnection con = open(method, url, parameters, null, null, timer);
+        try (InputStream in = body(con, timer)) {
+            return handler.handle(in, charset(con.getContentType()));
+        }
+    }
+
+    /**
+     * Same as getResponse(), but the body is passed to the handler in parts of up to 64 KB, read into
+     * a pooled buffer. Memory use does not depend on the size of the response.
+     *
+     * @param method Request method: GET or POST.
+     * @param url Base URL of the request.
+     * @param parameters Valid string that includes the request parameters.
+     * @param handler Receives the parts of the body, in order.
+     * @return Charset of the response (from the Content-Type header, UTF-8 if none is given), for decoding the parts.
+     */
+    public static Charset getResponseChunks(String method, String url, String parameters, ChunkHandler handler)
+            throws IOException {
+        RequestTimer timer = RequestTimer.start(LISTENERS, method, url);
+        HttpURLConnection con = open(method, url, parameters, null, null, timer);
+        try (InputStream in = body(con, timer)) {
+            copy(in, handler);
+            return charset(con.getContentType());
+        }
+    }
+
+    /**
+     * Same as getResponse(), but the body is written to a file instead of being returned, through a pooled buffer.
+     * The body is written to a temporary file in the same directory, which replaces the file only once the whole
+     * body has been read, so a failed request leaves an existing file as it was.
+     *
+     * @param method Request method: GET or POST.
+     * @param url Base URL of the request.
+     * @param parameters Valid string that includes the request parameters.
+     * @param file Where to write the body.
+     * @return Number of bytes written.
+     */
+    public static long getResponseToFile(String method, String url, String parameters, Path file) throws IOException {
+        RequestTimer timer = RequestTimer.start(LISTENERS, method, url);
+        HttpURLConnection con = open(method, url, parameters, null, null, timer);
+        try (InputStream in = body(con, timer)) {
+            Path target = file.toAbsolutePath();
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+            try {
+                long size;
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    copy(in, chunk -> {
+                        while (chunk.hasRemaining()) {
+                            channel.write(chunk);
+                        }
+                    });
+                    size = channel.size();
+                }
+                // the stream of HttpURLConnection just ends if the connection closes early
+                long expected = con.getContentLengthLong();
+                if (expected >= 0 && size < expected && con.getContentEncoding() == null) {
+                    throw new EOFException("Connection closed after " + size + " of " + expected + " bytes.");
+                }
+                move(temp, target);
+                return size;
+            }
+            catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Replace the target with the source at once, or as a plain move where the file system cannot do that.
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Pass the stream to the handler in parts, read into a pooled buffer.
+     */
+    private static void copy(InputStream in, ChunkHandler handler) throws IOException {
+        ByteBuffer buffer = BufferPool.acquire();
+        try {
+            int read;
+            while ((read = in.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                buffer.clear().limit(read);
+                handler.accept(buffer);
+            }
+        }
+        finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * @param contentType Value of the Content-Type header (may be null).
+     * @return The charset parameter of the header, or UTF-8 if there is none or it is not supported.
+     */
+    static Charset charset(String contentType) {
+        if (contentType == null) {
+            return StandardCharsets.UTF_8;
+        }
+        for (String part : contentType.split(";")) {
+            part = part.trim();
+            if (part.regionMatches(true, 0, "charset=", 0, 8)) {
+                try {
+                    return Charset.forName(part.substring(8).replace("\"", "").trim());
+                }
+                catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    break;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Opens the connection and sends the request, the response is left to the caller.
+     *
+     * @param body Body of the request, or null to send the parameters as the body of a POST request.
+     * @param timer Measures the request (may be null), is finished here if the request fails.
+     */
+    private static HttpURLConnection open(String method, String url, String parameters, RequestBody body,
+                                          Consumer<HttpURLConnection> configure, RequestTimer timer)
+            throws IOException {
+        if (method.equals("GET") && parameters.length() != 0) {
+            url = url + "?" + parameters;
+        }
+        RequestBody upload = body;
+        if (upload == null && method.equals("POST")) {
+            upload = RequestBody.of(parameters.getBytes(StandardCharsets.UTF_8), null);
+        }
+        try {
+            URL u = new URL(url);
+            if (timer != null) {
+                timer.resolve(u);
+            }
+
+            HttpURLConnection con = (HttpURLConnection) u.openConnection();
+            con.setRequestMethod(method);
+            con.setConnectTimeout(connectTimeout);
+            con.setReadTimeout(readTimeout);
+            if (configure != null) {
+                configure.accept(con);
+            }
+            if (requestCompression && upload != null) {
+                // must be set before the output stream is opened
+                con.setRequestProperty("Content-Encoding", "gzip");
+            }
+
+            if (responseCompression) {
+                con.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPTED);
+            }
+            if (upload != null) {
+                con.setDoOutput(true);
+                if (upload.contentType() != null) {
+                    con.setRequestProperty("Content-Type", upload.contentType());
+                }
+                if (body != null) {
+                    // streamed as it is written, instead of buffered in memory to find its length
+                    if (upload.length() >= 0 && !requestCompression) {
+                        con.setFixedLengthStreamingMode(upload.length());
+                    }
+                    else {
+                        con.setChunkedStreamingMode(CHUNK_SIZE);
+                    }
+                }
+            }
+            if (timer != null) {
+                con.connect(); // otherwise it happens when the request is written
+                timer.connected();
+            }
+
+            if (upload != null) {
+                OutputStream out = con.getOutputStream();
+                if (timer != null) {
+                    out = timer.requestBody(out);
+                }
+                if (requestCompression) {
+                    out = new GZIPOutputStream(out, 8 * 1024);
+                }
+                try (OutputStream closed = out) {
+                    upload.writeTo(closed, null);
+                }
+            }
+            if (timer != null) {
+                timer.written();
+            }
+            return con;
+        }
+        catch (IOException e) {
+            if (timer != null) {
+                timer.finish(e);
+            }
+            throw e;
+        }
+        catch (RuntimeException e) {
+            // e.g. the CancellationException of an aborted HttpFanOut task, thrown by configure
+            if (timer != null) {
+                timer.finish(new IOException(e.toString(), e));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Status of the response, after waiting for it.
+     */
+    private static int status(HttpURLConnection con, RequestTimer timer) throws IOException {
+        if (timer == null) {
+            return con.getResponseCode();
+        }
+        try {
+            int status = con.getResponseCode();
+            timer.status(status);
+            return status;
+        }
+        catch (IOException e) {
+            timer.finish(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @param timer Measures the request (may be null), is finished when the body is closed or here if the request fails.
+     * @return The body of the response, decoded if it was compressed.
+     * @throws HttpStatusException If the status is 400 or more (FileNotFoundException for 404 and 410).
+     */
+    private static InputStream body(HttpURLConnection con, RequestTimer timer) throws IOException {
+        try {
+            int status = status(con, timer);
+            if (status >= 400 && status != HttpURLConnection.HTTP_NOT_FOUND && status != HttpURLConnection.HTTP_GONE) {
+                long retryAfter = retryAfterMillis(con);
+                con.disconnect();
+                throw new HttpStatusException(status, con.getURL().toString(), retryAfter);
+            }
+            InputStream in = con.getInputStream();
+            return ContentEncoding.decode(timer == null ? in : timer.responseBody(in), con.getContentEncoding());
+        }
+        catch (IOException e) {
+            if (timer != null) {
+                timer.finish(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return The Retry-After header (seconds or a date) in milliseconds, 0 if there is none.
+     */
+    private static long retryAfterMillis(HttpURLConnection con) {
+        String retryAfter = con.getHeaderField("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        }
+        catch (NumberFormatException e) {
+            long date = con.getHeaderFieldDate("Retry-After", 0);
+            return Math.max(0, date - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Same as getResponse(), but does not block the calling thread. The request is sent by a shared
+     * non-blocking client (java.net.http.HttpClient), so many requests can be in progress at once
+     * without a thread for each of them. Unlike getResponse(), the line breaks of the response are kept
+     * and the response is decoded with its own charset (UTF-8 if none is given). See setHttp2() for HTTP/2
+     * and setAsyncTimeout() for the timeout.
+     *
+     * @param method Request method: GET or POST.
+     * @param url Base URL of the request.
+     * @param parameters Valid string that includes the request parameters.
+     * @return Completes with the response from the server, or with an IOException if the request fails
+     *         or the server responds with an error status (400 or more).
+     */
+    public static CompletableFuture<String> getResponseAsync(String method, String url, String parameters) {
+        return AsyncHttp.send(method, url, parameters, http2, asyncTimeout);
+    }
+
+    /**
+     * Send many requests without blocking, at most maxConcurrent at once. A new request is started
+     * as soon as one of the previous ones completes, so no thread waits for the responses.
+     *
+     * @param requests Requests to send, in the order they are started.
+     * @param maxConcurrent Maximum number of requests in progress at once.
+     * @return One future per request, in the same order (see getResponseAsync()). A failed request
+     *         does not affect the others.
+     */
+    public static List<CompletableFuture<String>> getAll(List<Request> requests, int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one request must be allowed at once.");
+        }
+        Batch batch = new Batch(requests);
+        for (int i = 0; i < Math.min(maxConcurrent, requests.size()); i++) {
+            batch.startNext();
+        }
+        return batch.results;
+    }
+
+    /**
+     * @see #getAll(List, int)
+     * At most DEFAULT_MAX_CONCURRENT requests are in progress at once.
+     */
+    public static List<CompletableFuture<String>> getAll(List<Request> requests) {
+        return getAll(requests, DEFAULT_MAX_CONCURRENT);
+    }
+
+    /**
+     * Requests of a single getAll() call. Each started request takes up one of the maxConcurrent slots
+     * and starts the next request when it completes.
+     */
+    private static final class Batch {
+        private final List<Request> requests;
+        private final List<CompletableFuture<String>> results;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Batch(List<Request> requests) {
+            this.requests = new ArrayList<>(requests);
+            results = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                results.add(new CompletableFuture<>());
+            }
+        }
+
+        void startNext() {
+            int index;
+            while ((index = next.getAndIncrement()) < requests.size()) {
+                Request request = requests.get(index);
+                CompletableFuture<String> response = getResponseAsync(request.method, request.url, request.parameters);
+                CompletableFuture<String> result = results.get(index);
+                if (!response.isDone()) {
+                    response.whenComplete((body, error) -> {
+                        complete(result, body, error);
+                        startNext();
+                    });
+                    return;
+                }
+                // failed right away (e.g. invalid URL), the slot is still free
+                response.whenComplete((body, error) -> complete(result, body, error));
+            }
+        }
+
+        private static void complete(CompletableFuture<String> result, String body, Throwable error) {
+            if (error == null) {
+                result.complete(body);
+            }
+            else {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        }
     }
 }
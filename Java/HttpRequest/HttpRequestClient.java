@@ -0,0 +1,370 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A reusable alternative to HttpRequest.getResponse() for many requests to the same hosts.
+ * HttpRequest opens and closes a connection for every request, this client keeps the connections open
+ * (HTTP/1.1 keep-alive) in a pool of each host and reuses them, so repeated requests skip the TCP
+ * (and TLS) handshake. Create one client, share it between the threads and close it at the end.
+ *
+ * <pre>
+ * try (HttpRequestClient client = new HttpRequestClient(16, 30_000)) {
+ *     String response = client.getResponse("GET", url, parameters);
+ * }
+ * </pre>
+ *
+ * Supports http and https URLs. Unlike HttpRequest.getResponse(), the line breaks of the response are kept.
+ * Files are uploaded without copying them: for http URLs the kernel sends them straight from the file to the socket.
+ * If the server has closed a reused connection before responding, GET, HEAD, PUT, DELETE, OPTIONS and TRACE
+ * requests are sent again over another connection; other methods (e.g. POST) are not, as the server might have
+ * processed the request already, and neither are requests with a stream body, which can only be sent once.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class HttpRequestClient implements Closeable {
+    /** Default maximum number of connections to the same host. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+    /** Default time in milliseconds after which an idle connection is closed. */
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30_000;
+
+    private final HttpConnectionPool pool;
+    private final LongAdder requests = new LongAdder();
+    private volatile int connectTimeout = 10_000;
+    private volatile int readTimeout = 30_000;
+
+    /**
+     * @param maxConnectionsPerHost Maximum number of connections to the same host, in use or idle. Further
+     *                              requests to that host wait until a connection is free.
+     * @param keepAliveMillis Time after which an idle connection is closed.
+     */
+    public HttpRequestClient(int maxConnectionsPerHost, long keepAliveMillis) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("At least one connection per host is needed.");
+        }
+        pool = new HttpConnectionPool(maxConnectionsPerHost, keepAliveMillis);
+    }
+
+    /**
+     * @see #HttpRequestClient(int, long)
+     * Uses DEFAULT_MAX_CONNECTIONS_PER_HOST and DEFAULT_KEEP_ALIVE_MILLIS.
+     */
+    public HttpRequestClient() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_KEEP_ALIVE_MILLIS);
+    }
+
+    /**
+     * @param millis Timeout for opening a connection (0 means no timeout, default is 10 seconds).
+     */
+    public void setConnectTimeout(int millis) {
+        connectTimeout = millis;
+    }
+
+    /**
+     * @param millis Timeout for each read of the response (0 means no timeout, default is 30 seconds).
+     */
+    public void setReadTimeout(int millis) {
+        readTimeout = millis;
+    }
+
+    /**
+     * This method executes the request and returns whatever the server returns.
+     * A pooled connection is used if there is one, otherwise a new connection is opened and kept for later.
+     *
+     * @param method Request method: GET or POST.
+     * @param url Base URL of the request.
+     * @param parameters Valid string that includes the request parameters (see HttpRequest.createParameters()).
+     * @return Response from the server in the string format, decoded with the charset of the response
+     *         (UTF-8 if none is given).
+     * @throws IOException If the request fails or the server responds with an error status (400 or more).
+     */
+    public String getResponse(String method, String url, String parameters) throws IOException {
+        if (method.equals("GET") && parameters.length() != 0) {
+            url = url + "?" + parameters;
+        }
+        RequestBody body = null;
+        if (method.equals("POST")) {
+            body = RequestBody.of(parameters.getBytes(StandardCharsets.UTF_8), "application/x-www-form-urlencoded");
+        }
+        return execute(method, url, body);
+    }
+
+    /**
+     * Send the file as the body of a POST or PUT request, with a Content-Length. For http URLs the file goes
+     * from the page cache to the socket with FileChannel.transferTo() (sendfile), without being copied
+     * into the JVM; for https URLs it is encrypted through a fixed buffer. Either way its size does not matter.
+     *
+     * @param method Request method: POST or PUT.
+     * @param url URL of the request.
+     * @param body The file to send, it must not change until the request is sent.
+     * @param contentType Value of the Content-Type header, e.g. "application/pdf".
+     * @return Response from the server in the string format.
+     * @throws IOException If the file cannot be read, the request fails or the server responds with an error status.
+     */
+    public String getResponse(String method, String url, Path body, String contentType) throws IOException {
+        return execute(method, url, RequestBody.of(body, contentType));
+    }
+
+    private String execute(String method, String url, RequestBody body) throws IOException {
+        URL u = new URL(url);
+        String scheme = u.getProtocol();
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            throw new IOException("Unsupported protocol: " + scheme);
+        }
+        int port = u.getPort() == -1 ? u.getDefaultPort() : u.getPort();
+        byte[] head = requestHead(method, u, port, body).getBytes(StandardCharsets.ISO_8859_1);
+        boolean retryable = isIdempotent(method) && (body == null || body.isRepeatable());
+        requests.increment();
+
+        while (true) {
+            PooledConnection connection = pool.acquire(scheme, u.getHost(), port, connectTimeout, readTimeout);
+            connection.startRequest();
+            boolean reusable = false;
+            try {
+                OutputStream out = connection.getOutputStream();
+                out.write(head);
+                if (body != null) {
+                    body.writeTo(out, connection.getChannel());
+                }
+                out.flush();
+                Response response = readResponse(connection, method);
+                reusable = response.keepAlive;
+                if (response.status >= 400) {
+                    throw new IOException("Server returned HTTP response code: " + response.status + " for URL: " + url);
+                }
+                return new String(response.body, response.charset);
+            }
+            catch (IOException e) {
+                if (retryable && connection.isReused() && !connection.isResponseStarted()) {
+                    // the server probably closed the idle connection before it got the request, try again;
+                    // it might have got it after all, so only requests that can safely be sent twice are
+                    continue;
+                }
+                throw e;
+            }
+            finally {
+                pool.release(connection, reusable);
+            }
+        }
+    }
+
+    /**
+     * @return Number of requests sent through this client.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return Number of connections opened by this client.
+     */
+    public long getConnectionCount() {
+        return pool.getOpenedCount();
+    }
+
+    /**
+     * @return Number of times a request was sent over an already open connection.
+     */
+    public long getReuseCount() {
+        return pool.getReusedCount();
+    }
+
+    /**
+     * @return Share of the connection acquisitions that reused an open connection (between 0 and 1).
+     */
+    public double getReuseRate() {
+        long reused = pool.getReusedCount();
+        long total = reused + pool.getOpenedCount();
+        return total == 0 ? 0 : (double) reused / total;
+    }
+
+    /**
+     * @return Number of open connections that are currently not in use.
+     */
+    public int getIdleConnectionCount() {
+        return pool.getIdleCount();
+    }
+
+    /**
+     * Close all the idle connections. Requests that are in progress finish, but no new ones can be sent.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRequestClient[requests=" + getRequestCount() + ", connections=" + getConnectionCount()
+                + ", reused=" + getReuseCount() + ", idle=" + getIdleConnectionCount() + "]";
+    }
+
+    /**
+     * @return True if sending the request twice has the same effect as sending it once (RFC 7231, 4.2.2).
+     */
+    private static boolean isIdempotent(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+            case "TRACE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String requestHead(String method, URL u, int port, RequestBody body) {
+        String path = u.getFile().isEmpty() ? "/" : u.getFile();
+        StringBuilder head = new StringBuilder(256);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(u.getHost());
+        if (port != u.getDefaultPort()) {
+            head.append(':').append(port);
+        }
+        head.append("\r\nAccept: */*\r\nConnection: keep-alive\r\n");
+        if (body != null) {
+            if (body.contentType() != null) {
+                head.append("Content-Type: ").append(body.contentType()).append("\r\n");
+            }
+            head.append("Content-Length: ").append(body.length()).append("\r\n");
+        }
+        return head.append("\r\n").toString();
+    }
+
+    /**
+     * The parts of a response this client needs.
+     */
+    private static final class Response {
+        int status;
+        boolean keepAlive;
+        Charset charset = StandardCharsets.UTF_8;
+        byte[] body;
+    }
+
+    private static Response readResponse(PooledConnection connection, String method) throws IOException {
+        Response response = new Response();
+        long contentLength;
+        boolean chunked;
+        do {
+            String statusLine = connection.readLine();
+            if (statusLine == null) {
+                throw new EOFException("The server closed the connection without a response.");
+            }
+            String[] status = statusLine.split(" ", 3);
+            if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+                throw new IOException("Invalid status line: " + statusLine);
+            }
+            long code = number(status[1], 10, "status code");
+            if (code < 100 || code > 999) {
+                throw new ProtocolException("Invalid status code: " + status[1]);
+            }
+            response.status = (int) code;
+            response.keepAlive = !status[0].equals("HTTP/1.0");
+            contentLength = -1;
+            chunked = false;
+
+            String line;
+            while (!(line = connection.readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                switch (name) {
+                    case "content-length": contentLength = number(value, 10, "Content-Length"); break;
+                    case "transfer-encoding": chunked = value.toLowerCase(Locale.ROOT).contains("chunked"); break;
+                    case "connection": response.keepAlive = !value.equalsIgnoreCase("close")
+                            && (response.keepAlive || value.equalsIgnoreCase("keep-alive")); break;
+                    case "content-type": response.charset = HttpRequest.charset(value); break;
+                    default: break;
+                }
+            }
+        } while (response.status >= 100 && response.status < 200);
+
+        InputStream in = connection.getInputStream();
+        if (method.equals("HEAD") || response.status == 204 || response.status == 304) {
+            response.body = new byte[0];
+        }
+        else if (chunked) {
+            response.body = readChunked(connection);
+        }
+        else if (contentLength >= 0) {
+            if (contentLength > Integer.MAX_VALUE - 8) {
+                throw new IOException("Response too large: " + contentLength + " bytes.");
+            }
+            response.body = in.readNBytes((int) contentLength);
+            if (response.body.length < contentLength) {
+                throw new EOFException("Connection closed after " + response.body.length + " of " + contentLength + " bytes.");
+            }
+        }
+        else {
+            // the body ends when the server closes the connection
+            response.body = in.readAllBytes();
+            response.keepAlive = false;
+        }
+        return response;
+    }
+
+    /**
+     * @param what Name of the value in the message of the exception.
+     * @return The value if it is a non-negative number.
+     * @throws ProtocolException If it is not.
+     */
+    private static long number(String value, int radix, String what) throws ProtocolException {
+        try {
+            long number = Long.parseLong(value, radix);
+            if (number >= 0) {
+                return number;
+            }
+        }
+        catch (NumberFormatException e) {
+            // thrown below
+        }
+        throw new ProtocolException("Invalid " + what + ": " + value);
+    }
+
+    private static byte[] readChunked(PooledConnection connection) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = connection.getInputStream();
+        while (true) {
+            String sizeLine = connection.readLine();
+            if (sizeLine == null) {
+                throw new EOFException("Connection closed in the middle of a chunked response.");
+            }
+            int extension = sizeLine.indexOf(';');
+            long size = number((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16, "chunk size");
+            if (size == 0) {
+                break;
+            }
+            if (size > Integer.MAX_VALUE - 8 - body.size()) {
+                throw new IOException("Response too large: more than " + (body.size() + size) + " bytes.");
+            }
+            byte[] chunk = in.readNBytes((int) size);
+            if (chunk.length < size) {
+                throw new EOFException("Connection closed in the middle of a chunk.");
+            }
+            body.write(chunk);
+            connection.readLine(); // line break after the chunk
+        }
+        String trailer;
+        while ((trailer = connection.readLine()) != null && !trailer.isEmpty()) {
+            // trailers are not used
+        }
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Receives the timings of every request sent by the blocking HttpRequest methods (see HttpRequest.addListener()),
+ * e.g. HttpMetrics. Retried requests are reported once per attempt, responses from the cache not at all.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public interface HttpRequestListener {
+
+    /**
+     * Called on the thread that sent the request, after the response was read or the request failed.
+     * Must be quick and thread-safe, exceptions are ignored.
+     *
+     * @param timings Timings of the request.
+     */
+    void requestCompleted(HttpTimings timings);
+}
@@ -0,0 +1,223 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process cache of GET responses for HttpRequest.getResponse() (see HttpRequest.setResponseCache()).
+ * Responses are kept for as long as the server allows (Cache-Control max-age, or Expires). After that, responses
+ * with an ETag or Last-Modified header are revalidated with a conditional request, so an unchanged response
+ * costs a "304 Not Modified" instead of the whole body. Responses with Cache-Control no-store are never kept
+ * and no-cache ones are revalidated every time.
+ * When the responses take up more than the byte budget, the least recently used ones are evicted.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class HttpResponseCache {
+
+    /**
+     * A cached response.
+     */
+    static final class Entry {
+        final String body;
+        final String etag;
+        final String lastModified;
+        final long size;
+        volatile long expires;
+
+        Entry(String body, String etag, String lastModified, long expires, long size) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+            this.size = size;
+        }
+
+        boolean isFresh(long now) {
+            return now < expires;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes Approximate memory the cached responses may take up.
+     */
+    public HttpResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return Number of responses served from the cache without contacting the server.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of requests that were not in the cache or had changed on the server.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of expired responses the server confirmed as unchanged (304 Not Modified).
+     */
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return Number of responses evicted to stay within the byte budget.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Approximate memory taken up by the cached responses.
+     */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of cached responses.
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Remove all the cached responses.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponseCache[entries=" + getEntryCount() + ", bytes=" + getSize() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", revalidations=" + getRevalidationCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    static String key(String method, String url, String parameters) {
+        return method + " " + url + "?" + parameters;
+    }
+
+    /**
+     * @return The cached response, fresh or not, or null if there is none.
+     */
+    synchronized Entry lookup(String key) {
+        return entries.get(key);
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    /**
+     * The server confirmed that the response has not changed.
+     *
+     * @param cacheControl Cache-Control header of the 304 response (may be null).
+     * @param expires Expires header of the 304 response in milliseconds (0 if none).
+     */
+    void revalidated(Entry entry, String cacheControl, long expires) {
+        revalidations.increment();
+        entry.expires = expiry(cacheControl, expires, System.currentTimeMillis());
+    }
+
+    /**
+     * Keep a response if the server allows it.
+     *
+     * @param cacheControl Cache-Control header of the response (may be null).
+     * @param expires Expires header of the response in milliseconds (0 if none).
+     * @param etag ETag header of the response (may be null).
+     * @param lastModified Last-Modified header of the response (may be null).
+     */
+    void store(String key, String body, String cacheControl, long expires, String etag, String lastModified) {
+        if (cacheControl != null && directives(cacheControl).contains("no-store")) {
+            remove(key);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiry = expiry(cacheControl, expires, now);
+        if (expiry <= now && etag == null && lastModified == null) {
+            remove(key); // could never be used again
+            return;
+        }
+        // chars of the body and the key, plus the headers and the objects
+        long size = 2L * (body.length() + key.length()) + 2L * ((etag == null ? 0 : etag.length())
+                + (lastModified == null ? 0 : lastModified.length())) + 128;
+        if (size > maxBytes) {
+            remove(key);
+            return;
+        }
+        synchronized (this) {
+            Entry old = entries.put(key, new Entry(body, etag, lastModified, expiry, size));
+            bytes += size - (old == null ? 0 : old.size);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().size;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.size;
+        }
+    }
+
+    /**
+     * @return Time until which the response may be used without revalidation (now if it must be revalidated).
+     */
+    private static long expiry(String cacheControl, long expires, long now) {
+        if (cacheControl != null) {
+            String directives = directives(cacheControl);
+            if (directives.contains("no-cache")) {
+                return now;
+            }
+            int maxAge = directives.indexOf("max-age=");
+            if (maxAge >= 0) {
+                int start = maxAge + 8;
+                int end = start;
+                while (end < directives.length() && Character.isDigit(directives.charAt(end))) {
+                    end++;
+                }
+                try {
+                    return now + Long.parseLong(directives.substring(start, end)) * 1000;
+                }
+                catch (NumberFormatException e) {
+                    return now;
+                }
+            }
+        }
+        return Math.max(expires, now);
+    }
+
+    private static String directives(String cacheControl) {
+        return cacheControl.toLowerCase(Locale.ROOT).replace(" ", "");
+    }
+}
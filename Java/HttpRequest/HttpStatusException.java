@@ -0,0 +1,37 @@
+import java.io.IOException;
+
+/**
+ * Thrown by the blocking HttpRequest methods when the server responds with an error status (400 or more).
+ * 404 and 410 are still reported with a FileNotFoundException, as by HttpURLConnection.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    /**
+     * @param statusCode Status of the response.
+     * @param url URL of the request.
+     * @param retryAfterMillis Time the server asked the client to wait with the Retry-After header (0 if none).
+     */
+    public HttpStatusException(int statusCode, String url, long retryAfterMillis) {
+        super("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return Time the server asked the client to wait before trying again (Retry-After in seconds), 0 if it did not.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
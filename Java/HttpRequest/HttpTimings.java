@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Where the time of a single request went, split into phases, with its status and the bytes sent and received
+ * (see HttpRequestListener). Phases the request did not reach (e.g. after a connection error) take 0 ns.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public final class HttpTimings {
+
+    /**
+     * Phases of a request, in order.
+     */
+    public enum Phase {
+        /** Resolving the host name (usually from the cache of InetAddress), empty when a proxy is used. */
+        DNS,
+        /** Opening the connection, including the TLS handshake for https. */
+        CONNECT,
+        /** Sending the request body. */
+        WRITE,
+        /** Waiting for the status and the headers of the response (time to first byte). */
+        FIRST_BYTE,
+        /** Reading the body of the response. */
+        READ,
+        /** The whole request. */
+        TOTAL
+    }
+
+    private final String method;
+    private final String url;
+    private final String host;
+    private final long[] nanos;
+    private final int status;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final IOException error;
+
+    HttpTimings(String method, String url, String host, long[] nanos, int status, long bytesSent, long bytesReceived,
+                IOException error) {
+        this.method = method;
+        this.url = url;
+        this.host = host;
+        this.nanos = nanos;
+        this.status = status;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.error = error;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return URL of the request, with the parameters of a GET request.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return Host of the request, as host:port.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return Time the phase took in nanoseconds.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return Status of the response, -1 if there was none.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Bytes of the request body, as sent (after compression).
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return Bytes of the response body, as received (before decompression).
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return Why the request failed, null if it succeeded. Error statuses are reported as HttpStatusException
+     *         (FileNotFoundException for 404 and 410).
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(method).append(' ').append(url).append(" -> ").append(status);
+        for (Phase phase : Phase.values()) {
+            builder.append(", ").append(phase.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(String.format("%.3f", nanos[phase.ordinal()] / 1e6)).append(" ms");
+        }
+        builder.append(", sent=").append(bytesSent).append(", received=").append(bytesReceived);
+        if (error != null) {
+            builder.append(", error=").append(error);
+        }
+        return builder.toString();
+    }
+}
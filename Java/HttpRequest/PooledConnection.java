@@ -0,0 +1,127 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A connection to a single host, kept open between requests by the HttpConnectionPool.
+ * Only the thread that acquired it from the pool uses it until it is released.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class PooledConnection {
+    private static final int MAX_LINE_LENGTH = 16 * 1024;
+
+    final HttpConnectionPool.Host host;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final StringBuilder line = new StringBuilder();
+    private int requests;
+    private long lastUsed;
+    private boolean responseStarted;
+
+    PooledConnection(HttpConnectionPool.Host host, Socket socket) throws IOException {
+        this.host = host;
+        this.socket = socket;
+        in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+        out = new BufferedOutputStream(socket.getOutputStream(), 8 * 1024);
+    }
+
+    /**
+     * Called before each request on this connection.
+     */
+    void startRequest() {
+        requests++;
+        responseStarted = false;
+    }
+
+    /**
+     * @return True if this connection was already used by an earlier request.
+     */
+    boolean isReused() {
+        return requests > 1;
+    }
+
+    /**
+     * @return True once any byte of the current response has been read. Until then the request can be safely
+     *         repeated on another connection if this one turns out to have been closed by the server.
+     */
+    boolean isResponseStarted() {
+        return responseStarted;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+
+    void setReadTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * @return The channel of the socket, to write to it directly after flushing the output stream,
+     *         or null if there is none (https, the data has to be encrypted first).
+     */
+    WritableByteChannel getChannel() {
+        return socket.getChannel();
+    }
+
+    InputStream getInputStream() {
+        return in;
+    }
+
+    boolean isOpen() {
+        return !socket.isClosed() && !socket.isInputShutdown();
+    }
+
+    /**
+     * Read a line of the status or of the headers (ISO-8859-1), without the line break.
+     *
+     * @return The line, or null if the server closed the connection before sending anything.
+     */
+    String readLine() throws IOException {
+        line.setLength(0);
+        int b;
+        while ((b = in.read()) != -1) {
+            responseStarted = true;
+            if (b == '\n') {
+                int end = line.length();
+                if (end > 0 && line.charAt(end - 1) == '\r') {
+                    line.setLength(end - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() == MAX_LINE_LENGTH) {
+                throw new IOException("Response line longer than " + MAX_LINE_LENGTH + " characters.");
+            }
+            line.append((char) b);
+        }
+        if (line.length() == 0 && !responseStarted) {
+            return null;
+        }
+        throw new EOFException("Connection closed in the middle of a line.");
+    }
+
+    void close() {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // nothing else to do with a connection we are throwing away
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The body of a POST or PUT request, written straight to the connection: a file with FileChannel.transferTo()
+ * if the socket has a channel (otherwise through a pooled buffer), a buffer from where it is, a stream through
+ * a pooled buffer. None of them is copied into a byte array or a String first, so the memory used does not
+ * depend on the size of the body.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+abstract class RequestBody {
+    private final String contentType;
+
+    private RequestBody(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return Value of the Content-Type header, null to leave it to the connection.
+     */
+    final String contentType() {
+        return contentType;
+    }
+
+    /**
+     * @return Length of the body in bytes, -1 if it is not known before it is written.
+     */
+    abstract long length();
+
+    /**
+     * @return True if the body can be written more than once, e.g. when the request is retried.
+     */
+    abstract boolean isRepeatable();
+
+    /**
+     * Write the whole body.
+     *
+     * @param out Where to write the body.
+     * @param socket The channel of the socket under out if the body can be written to it directly
+     *               (after out is flushed), null if there is none.
+     */
+    abstract void writeTo(OutputStream out, WritableByteChannel socket) throws IOException;
+
+    static RequestBody of(byte[] bytes, String contentType) {
+        return new RequestBody(contentType) {
+            @Override
+            long length() {
+                return bytes.length;
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            void writeTo(OutputStream out, WritableByteChannel socket) throws IOException {
+                out.write(bytes);
+            }
+        };
+    }
+
+    /**
+     * The size of the file is taken now, the file must not change until the request is sent.
+     */
+    static RequestBody of(Path file, String contentType) throws IOException {
+        long size = Files.size(file);
+        return new RequestBody(contentType) {
+            @Override
+            long length() {
+                return size;
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            void writeTo(OutputStream out, WritableByteChannel socket) throws IOException {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (socket != null) {
+                        out.flush(); // the kernel sends the file after whatever is buffered
+                        long position = 0;
+                        while (position < size) {
+                            long sent = channel.transferTo(position, size - position, socket);
+                            if (sent <= 0 && position >= channel.size()) {
+                                throw new EOFException("The file got shorter while it was sent: " + file);
+                            }
+                            position += sent;
+                        }
+                        return;
+                    }
+                    // transferTo() to a stream copies through a small buffer, a pooled one is faster
+                    ByteBuffer part = BufferPool.acquire();
+                    try {
+                        long left = size;
+                        while (left > 0) {
+                            part.clear().limit((int) Math.min(left, part.capacity()));
+                            if (channel.read(part) < 0) {
+                                throw new EOFException("The file got shorter while it was sent: " + file);
+                            }
+                            out.write(part.array(), 0, part.position());
+                            left -= part.position();
+                        }
+                    }
+                    finally {
+                        BufferPool.release(part);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * The bytes between the position and the limit are sent, the position of the buffer does not change.
+     */
+    static RequestBody of(ByteBuffer buffer, String contentType) {
+        ByteBuffer body = buffer.duplicate();
+        return new RequestBody(contentType) {
+            @Override
+            long length() {
+                return body.remaining();
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            void writeTo(OutputStream out, WritableByteChannel socket) throws IOException {
+                ByteBuffer source = body.duplicate();
+                if (source.hasArray()) {
+                    out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+                    return;
+                }
+                // a direct buffer, copied in parts
+                ByteBuffer part = BufferPool.acquire();
+                try {
+                    while (source.hasRemaining()) {
+                        int length = Math.min(source.remaining(), part.capacity());
+                        source.get(part.array(), 0, length);
+                        out.write(part.array(), 0, length);
+                    }
+                }
+                finally {
+                    BufferPool.release(part);
+                }
+            }
+        };
+    }
+
+    /**
+     * The stream is read until its end but not closed, it can only be sent once.
+     */
+    static RequestBody of(InputStream in, String contentType) {
+        return new RequestBody(contentType) {
+            @Override
+            long length() {
+                return -1;
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            void writeTo(OutputStream out, WritableByteChannel socket) throws IOException {
+                ByteBuffer part = BufferPool.acquire();
+                try {
+                    int read;
+                    while ((read = in.read(part.array(), 0, part.capacity())) != -1) {
+                        out.write(part.array(), 0, read);
+                    }
+                }
+                finally {
+                    BufferPool.release(part);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,191 @@
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Measures the phases of a single request of HttpRequest and reports them to the listeners when the response
+ * body is closed or the request fails. The blocking methods create one only if there are listeners, so
+ * requests without listeners are not measured at all.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class RequestTimer {
+    private final List<HttpRequestListener> listeners;
+    private final String method;
+    private final long start = System.nanoTime();
+    private final long[] nanos = new long[HttpTimings.Phase.values().length];
+    private long mark = start;
+    private String url;
+    private String host;
+    private int status = -1;
+    private long bytesSent;
+    private long bytesReceived;
+    private boolean finished;
+
+    private RequestTimer(List<HttpRequestListener> listeners, String method, String url) {
+        this.listeners = listeners;
+        this.method = method;
+        this.url = url;
+        this.host = url;
+    }
+
+    /**
+     * @return A timer for the request, or null if there are no listeners.
+     */
+    static RequestTimer start(List<HttpRequestListener> listeners, String method, String url) {
+        return listeners.isEmpty() ? null : new RequestTimer(listeners, method, url);
+    }
+
+    /**
+     * Resolve the host if the connection goes to it directly, so the time is not hidden in the connect phase.
+     * The connection then finds the address in the cache of InetAddress. Through a proxy the proxy resolves
+     * the host, so the DNS phase is left empty.
+     */
+    void resolve(URL u) throws IOException {
+        url = u.toString();
+        host = u.getHost() + ":" + (u.getPort() == -1 ? u.getDefaultPort() : u.getPort());
+        if (isDirect(u)) {
+            InetAddress.getByName(u.getHost());
+        }
+        phase(HttpTimings.Phase.DNS);
+    }
+
+    /**
+     * @return True if the default ProxySelector (which HttpURLConnection uses) does not send the request
+     *         through a proxy.
+     */
+    private static boolean isDirect(URL u) {
+        ProxySelector selector = ProxySelector.getDefault();
+        if (selector == null) {
+            return true;
+        }
+        try {
+            List<Proxy> proxies = selector.select(u.toURI());
+            return proxies.isEmpty() || proxies.get(0).type() == Proxy.Type.DIRECT;
+        }
+        catch (URISyntaxException | IllegalArgumentException e) {
+            return false; // let the connection deal with the URL
+        }
+    }
+
+    void connected() {
+        phase(HttpTimings.Phase.CONNECT);
+    }
+
+    /**
+     * @return The stream, counting the bytes written to it.
+     */
+    OutputStream requestBody(OutputStream body) {
+        return new FilterOutputStream(body) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesSent++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesSent += len;
+            }
+        };
+    }
+
+    void written() {
+        phase(HttpTimings.Phase.WRITE);
+    }
+
+    void status(int status) {
+        if (this.status == -1) {
+            this.status = status;
+            phase(HttpTimings.Phase.FIRST_BYTE);
+        }
+    }
+
+    /**
+     * @return The stream, counting the bytes read from it and finishing the timer when it is closed.
+     */
+    InputStream responseBody(InputStream body) {
+        return new FilterInputStream(body) {
+            private IOException failure;
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    int b = in.read();
+                    if (b != -1) {
+                        bytesReceived++;
+                    }
+                    return b;
+                }
+                catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    int read = in.read(b, off, len);
+                    if (read > 0) {
+                        bytesReceived += read;
+                    }
+                    return read;
+                }
+                catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    in.close();
+                }
+                finally {
+                    phase(HttpTimings.Phase.READ);
+                    finish(failure);
+                }
+            }
+        };
+    }
+
+    /**
+     * Report the request, once. The phases after the last one reached stay 0.
+     *
+     * @param error Why the request failed, null if it did not.
+     */
+    void finish(IOException error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        nanos[HttpTimings.Phase.TOTAL.ordinal()] = System.nanoTime() - start;
+        HttpTimings timings = new HttpTimings(method, url, host, nanos, status, bytesSent, bytesReceived, error);
+        for (HttpRequestListener listener : listeners) {
+            try {
+                listener.requestCompleted(timings);
+            }
+            catch (RuntimeException e) {
+                // a broken listener must not break the request
+            }
+        }
+    }
+
+    private void phase(HttpTimings.Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] = now - mark;
+        mark = now;
+    }
+}
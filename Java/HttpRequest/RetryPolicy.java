@@ -0,0 +1,112 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * When HttpRequest.getResponse() sends a failed request again (see HttpRequest.setRetryPolicy()).
+ * Only idempotent requests (GET, HEAD, PUT, DELETE, OPTIONS, TRACE) are retried, and only after failures
+ * that may go away: connection and timeout errors, and the statuses 408, 429, 502, 503 and 504.
+ * <p>
+ * Before each retry the request waits a random time between 0 and baseDelayMillis * 2^(retry - 1), but at most
+ * maxDelayMillis ("full jitter"), so clients that failed together do not all retry at the same moment.
+ * A longer Retry-After of the server is respected, up to maxDelayMillis.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class RetryPolicy {
+    /** Every request is sent only once. */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts Number of times a request may be sent, including the first one.
+     * @param baseDelayMillis Longest wait before the first retry, it doubles for each further retry.
+     * @param maxDelayMillis Longest wait before any retry.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("A request must be sent at least once.");
+        }
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= baseDelayMillis <= maxDelayMillis.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[maxAttempts=" + maxAttempts + ", baseDelayMillis=" + baseDelayMillis
+                + ", maxDelayMillis=" + maxDelayMillis + "]";
+    }
+
+    /**
+     * @return Number of times a request with this method may be sent.
+     */
+    int attempts(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+            case "TRACE":
+                return maxAttempts;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * @return True if the same request may succeed if it is sent again.
+     */
+    static boolean isRetryable(IOException failure) {
+        if (failure instanceof HttpStatusException) {
+            switch (((HttpStatusException) failure).getStatusCode()) {
+                case 408:
+                case 429:
+                case 502:
+                case 503:
+                case 504:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        if (failure instanceof InterruptedIOException) {
+            return failure instanceof SocketTimeoutException; // otherwise the thread was interrupted
+        }
+        return !(failure instanceof FileNotFoundException || failure instanceof CircuitOpenException
+                || failure instanceof MalformedURLException || failure instanceof ProtocolException
+                || failure instanceof UnknownHostException || failure instanceof SSLHandshakeException);
+    }
+
+    /**
+     * @param retry Number of the retry, starting with 1.
+     * @param failure Why the previous attempt failed.
+     * @return Time to wait before the retry.
+     */
+    long delayMillis(int retry, IOException failure) {
+        long cap = retry > 62 ? maxDelayMillis : Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry - 1, 30));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (failure instanceof HttpStatusException) {
+            delay = Math.max(delay, Math.min(maxDelayMillis, ((HttpStatusException) failure).getRetryAfterMillis()));
+        }
+        return delay;
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets concurrent identical requests share one call: the first caller of a key makes the call and
+ * everyone who asks for the same key while it is in progress waits for it and gets the same result
+ * (or the same failure). Once the call is done the key is free again, nothing is cached.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+final class SingleFlight {
+
+    /**
+     * The shared call.
+     */
+    interface Call {
+        String call() throws IOException;
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    String execute(String key, Call call) throws IOException {
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = calls.putIfAbsent(key, own);
+        if (inFlight != null) {
+            shared.increment();
+            return await(inFlight);
+        }
+        try {
+            String result = call.call();
+            own.complete(result);
+            return result;
+        }
+        catch (IOException | RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            calls.remove(key, own);
+        }
+    }
+
+    /**
+     * @return Number of calls that were not made because an identical one was already in progress.
+     */
+    long getSharedCount() {
+        return shared.sum();
+    }
+
+    private static String await(CompletableFuture<String> inFlight) throws IOException {
+        try {
+            return inFlight.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical request.");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // the same exception as the caller that made the call, so its type (e.g. HttpStatusException,
+            // FileNotFoundException or SocketTimeoutException) can be caught the same way
+            throw (IOException) cause;
+        }
+    }
+}
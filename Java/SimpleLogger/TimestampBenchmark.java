@@ -0,0 +1,66 @@
+import logger.TimestampFormatter;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+
+/**
+ * Compares the throughput of the old way of formatting the timestamps in Logger.log() (new SimpleDateFormat
+ * and Timestamp per message) with the cached TimestampFormatter.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class TimestampBenchmark {
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 1000;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("Warming up...");
+        measure(false);
+        measure(true);
+
+        double before = 0;
+        double after = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            before += measure(false);
+            after += measure(true);
+        }
+        before /= ITERATIONS;
+        after /= ITERATIONS;
+        System.out.printf("SimpleDateFormat:   %,.0f ops/s%n", before);
+        System.out.printf("TimestampFormatter: %,.0f ops/s%n", after);
+        System.out.printf("Speedup: %.1fx%n", after / before);
+        if (sink == 42) {
+            System.out.println(); // prevents the formatting being optimised away
+        }
+    }
+
+    /**
+     * @param cached True to measure TimestampFormatter, false for SimpleDateFormat.
+     * @return Operations per second.
+     */
+    private static double measure(boolean cached) {
+        StringBuilder out = new StringBuilder(32);
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + ITERATION_MILLIS * 1_000_000;
+        long now;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                out.setLength(0);
+                if (cached) {
+                    TimestampFormatter.format(System.currentTimeMillis(), out);
+                }
+                else {
+                    out.append(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(new Timestamp(System.currentTimeMillis())));
+                }
+                sink += out.charAt(18);
+            }
+            operations += 1000;
+            now = System.nanoTime();
+        } while (now < end);
+        return operations * 1e9 / (now - start);
+    }
+}
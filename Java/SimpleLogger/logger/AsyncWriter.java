@@ -0,0 +1,149 @@
+package logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread that drains the ring buffer in batches and hands the formatted
+ * messages over to the sinks of the Logger. Logging threads only publish records to the
+ * ring buffer and never touch the outputs themselves.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class AsyncWriter implements Runnable {
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long BLOCKED_PARK_NANOS = 50_000L;
+
+    private final RingBuffer ring;
+    private final OverflowPolicy policy;
+    private final int debugLimit;
+    private final LoggerMetrics metrics;
+    private final ByteBuilder line = new ByteBuilder(512);
+    private final List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long written;
+
+    AsyncWriter(int capacity, OverflowPolicy policy, LoggerMetrics metrics) {
+        this.ring = new RingBuffer(capacity);
+        this.policy = policy;
+        this.metrics = metrics;
+        this.debugLimit = ring.capacity() - ring.capacity() / 4;
+        thread = new Thread(this, "logger-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Publish a message according to the overflow policy. Called by the logging threads.
+     */
+    void publish(long time, Level level, String message) {
+        publish(time, level, String.valueOf(message), null);
+    }
+
+    /**
+     * Publish a record that is already encoded, according to the overflow policy.
+     */
+    void publish(long time, Level level, byte[] encoded) {
+        publish(time, level, null, encoded);
+    }
+
+    private void publish(long time, Level level, String message, byte[] encoded) {
+        if (policy == OverflowPolicy.DROP_DEBUG && level == Level.DEBUG && ring.size() >= debugLimit) {
+            // keep the remaining space for the more important messages
+            metrics.dropped(1);
+            return;
+        }
+        if (ring.offer(time, level, message, encoded)) {
+            return;
+        }
+        if (policy == OverflowPolicy.DROP || Thread.currentThread() == thread) {
+            // the writer itself must never wait for its own buffer
+            metrics.dropped(1);
+            return;
+        }
+        do {
+            if (!thread.isAlive()) {
+                // the logger was stopped, nobody will free up a slot any more
+                metrics.dropped(1);
+                return;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        } while (!ring.offer(time, level, message, encoded));
+    }
+
+    /**
+     * Block until everything published before this call has been handed over to the sinks.
+     */
+    void flush() {
+        long target = ring.claimed();
+        while (written < target && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Write out the remaining messages and stop the writer thread.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getQueueDepth() {
+        return ring.size();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            if (drainBatch() == 0) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * @return Number of records written.
+     */
+    private int drainBatch() {
+        int count = 0;
+        LogRecord record;
+        LogEncoder encoder = Logger.encoder();
+        metrics.queueDepth(ring.size());
+        while (count < BATCH_SIZE && (record = ring.peek()) != null) {
+            byte[] bytes = record.encoded;
+            if (bytes == null) {
+                line.setLength(0);
+                encoder.encode(line, record.time, record.level, record.message, 0, record.message.length(), null);
+                bytes = line.toByteArray();
+            }
+            batch.add(new LogEntry(record.time, record.level, bytes));
+            ring.release();
+            count++;
+        }
+        if (count > 0) {
+            Logger.dispatch(batch);
+            batch.clear();
+            written = ring.consumed();
+        }
+        return count;
+    }
+}
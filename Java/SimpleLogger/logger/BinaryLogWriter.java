@@ -0,0 +1,339 @@
+package logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes log records in a fixed binary layout into memory-mapped segment files, so that nothing is
+ * formatted while logging. Use LogDecoder to turn the segments back into the usual text format.
+ * <p>
+ * Segment layout (big-endian):
+ * <pre>
+ *   header:   int MAGIC, int VERSION
+ *   template: byte TEMPLATE, int id, string template
+ *   record:   byte RECORD, long epochNanos, byte level ordinal, long thread id, int template id,
+ *             byte argument count, arguments
+ *   argument: byte type, value (long/int/double/boolean/char, or a string)
+ *   string:   int length in bytes, UTF-8 bytes
+ * </pre>
+ * A zero byte where the next entry should start marks the end of the segment. Every segment
+ * defines the templates it uses, so each one can be decoded on its own.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class BinaryLogWriter {
+    static final int MAGIC = 0x534C4F47; // "SLOG"
+    static final int VERSION = 1;
+
+    static final byte END = 0;
+    static final byte TEMPLATE = 1;
+    static final byte RECORD = 2;
+
+    static final byte ARG_NULL = 0;
+    static final byte ARG_STRING = 1;
+    static final byte ARG_LONG = 2;
+    static final byte ARG_INT = 3;
+    static final byte ARG_DOUBLE = 4;
+    static final byte ARG_BOOLEAN = 5;
+    static final byte ARG_CHAR = 6;
+
+    /** Template of plain (not parameterized) messages, the message is its only argument. */
+    static final String PLAIN = "{}";
+
+    static final int MIN_SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_ARGS = 16;
+    private static final int MAX_STRING_CHARS = 64 * 1024;
+    private static final int FIXED_RECORD_SIZE = 1 + 8 + 1 + 8 + 4 + 1;
+
+    private final String baseName;
+    private final int segmentSize;
+    private final LoggerMetrics metrics;
+    private final ConcurrentHashMap<String, Integer> templateIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextTemplateId = new AtomicInteger();
+    private final BitSet definedInSegment = new BitSet();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * The reusable array for the arguments of a thread, busy while log() is using it.
+     */
+    private static final class Scratch {
+        final Object[] values = new Object[MAX_ARGS];
+        boolean busy;
+    }
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segment;
+
+    /**
+     * @param baseName Path of the segment files without the segment number and extension.
+     * @param segmentSize Size of each segment file in bytes.
+     * @param metrics Where to count the bytes written.
+     */
+    BinaryLogWriter(String baseName, int segmentSize, LoggerMetrics metrics) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes: " + segmentSize);
+        }
+        this.baseName = baseName;
+        this.segmentSize = segmentSize;
+        this.metrics = metrics;
+        templateId(PLAIN);
+        open();
+    }
+
+    /**
+     * Write a plain message.
+     */
+    void log(Level level, String message) {
+        log(level, PLAIN, 1, message, null);
+    }
+
+    /**
+     * Write a parameterized message with at most two arguments, without creating an array for them.
+     *
+     * @param argCount Number of the arguments used (0 to 2).
+     */
+    void log(Level level, String template, int argCount, Object arg1, Object arg2) {
+        long time = LogClock.epochNanos();
+        long threadId = Thread.currentThread().getId();
+        int id = templateId(template);
+        arg1 = argCount > 0 ? normalize(arg1) : null;
+        arg2 = argCount > 1 ? normalize(arg2) : null;
+        int size = FIXED_RECORD_SIZE + argSize(arg1) + argSize(arg2);
+        synchronized (this) {
+            int start = ensureRoom(size, id, template);
+            writeHeader(time, level, threadId, id, argCount);
+            if (argCount > 0) {
+                writeArg(arg1);
+            }
+            if (argCount > 1) {
+                writeArg(arg2);
+            }
+            metrics.written(buffer.position() - start);
+        }
+    }
+
+    /**
+     * Write a parameterized message with any number of arguments (only the first 16 are kept).
+     */
+    void log(Level level, String template, Object[] args) {
+        long time = LogClock.epochNanos();
+        long threadId = Thread.currentThread().getId();
+        int id = templateId(template);
+        int count = Math.min(args.length, MAX_ARGS);
+        Scratch reused = scratch.get();
+        // toString() of an argument may log a message of its own, which needs an array of its own
+        boolean nested = reused.busy;
+        Object[] values = nested ? new Object[count] : reused.values;
+        reused.busy = true;
+        try {
+            int size = FIXED_RECORD_SIZE;
+            for (int i = 0; i < count; i++) {
+                values[i] = normalize(args[i]);
+                size += argSize(values[i]);
+            }
+            synchronized (this) {
+                int start = ensureRoom(size, id, template);
+                writeHeader(time, level, threadId, id, count);
+                for (int i = 0; i < count; i++) {
+                    writeArg(values[i]);
+                }
+                metrics.written(buffer.position() - start);
+            }
+        }
+        finally {
+            if (!nested) {
+                Arrays.fill(values, 0, count, null);
+                reused.busy = false;
+            }
+        }
+    }
+
+    /**
+     * Mark the end of the data and release the current segment.
+     */
+    synchronized void close() throws IOException {
+        closeSegment();
+    }
+
+    private int templateId(String template) {
+        Integer id = templateIds.get(template);
+        if (id == null) {
+            id = templateIds.computeIfAbsent(template, t -> nextTemplateId.getAndIncrement());
+        }
+        return id;
+    }
+
+    private void open() throws IOException {
+        File file = new File(baseName + "_" + segment + ".bin");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        definedInSegment.clear();
+    }
+
+    private void closeSegment() throws IOException {
+        int end = buffer.position();
+        if (buffer.remaining() > 0) {
+            buffer.put(END);
+        }
+        long start = System.nanoTime();
+        buffer.force();
+        metrics.forced(System.nanoTime() - start);
+        try {
+            channel.truncate(end + 1L);
+        }
+        catch (IOException e) {
+            // some platforms cannot truncate a mapped file, the END marker is enough for the decoder
+        }
+        channel.close();
+    }
+
+    /**
+     * Make sure the record (and the template definition, if this segment does not have it yet) fits
+     * into the current segment, otherwise continue in a new segment.
+     *
+     * @return Position where the record (or the template definition before it) starts.
+     */
+    private int ensureRoom(int recordSize, int id, String template) {
+        boolean defined = definedInSegment.get(id);
+        int needed = recordSize + 1 + (defined ? 0 : 1 + 4 + stringSize(template));
+        if (buffer.remaining() < needed) {
+            try {
+                closeSegment();
+                segment++;
+                open();
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Could not start a new binary log segment", e);
+            }
+            defined = false;
+        }
+        int start = buffer.position();
+        if (!defined) {
+            buffer.put(TEMPLATE).putInt(id);
+            writeString(template);
+            definedInSegment.set(id);
+        }
+        return start;
+    }
+
+    private void writeHeader(long time, Level level, long threadId, int id, int argCount) {
+        buffer.put(RECORD)
+                .putLong(time)
+                .put((byte) level.ordinal())
+                .putLong(threadId)
+                .putInt(id)
+                .put((byte) argCount);
+    }
+
+    /**
+     * Numbers, booleans and characters are written as they are, everything else as its toString().
+     * Calls toString() once on the logging thread, as the object might change later.
+     */
+    private static Object normalize(Object arg) {
+        if (arg == null || arg instanceof String || arg instanceof Number || arg instanceof Boolean
+                || arg instanceof Character) {
+            return arg;
+        }
+        return arg.toString();
+    }
+
+    /**
+     * @param arg Normalized argument.
+     * @return Upper bound of the encoded size.
+     */
+    private static int argSize(Object arg) {
+        if (arg == null || arg instanceof Boolean) {
+            return 2;
+        }
+        if (arg instanceof Long || arg instanceof Double) {
+            return 9;
+        }
+        if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            return 5;
+        }
+        if (arg instanceof Character) {
+            return 3;
+        }
+        return 1 + stringSize(arg.toString()); // other numbers are written as strings
+    }
+
+    /**
+     * @return Upper bound of the encoded size.
+     */
+    private static int stringSize(String s) {
+        return 4 + 3 * Math.min(s.length(), MAX_STRING_CHARS);
+    }
+
+    private void writeArg(Object arg) {
+        if (arg == null) {
+            buffer.put(ARG_NULL);
+        }
+        else if (arg instanceof Long) {
+            buffer.put(ARG_LONG).putLong((Long) arg);
+        }
+        else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            buffer.put(ARG_INT).putInt(((Number) arg).intValue());
+        }
+        else if (arg instanceof Double) {
+            buffer.put(ARG_DOUBLE).putDouble((Double) arg);
+        }
+        else if (arg instanceof Boolean) {
+            buffer.put(ARG_BOOLEAN).put((byte) ((Boolean) arg ? 1 : 0));
+        }
+        else if (arg instanceof Character) {
+            buffer.put(ARG_CHAR).putChar((Character) arg);
+        }
+        else {
+            buffer.put(ARG_STRING);
+            writeString(arg.toString());
+        }
+    }
+
+    /**
+     * Encodes the string as UTF-8 directly into the mapped buffer.
+     */
+    private void writeString(String s) {
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        int length = Math.min(s.length(), MAX_STRING_CHARS);
+        if (length < s.length() && Character.isHighSurrogate(s.charAt(length - 1))) {
+            length--; // do not cut a surrogate pair in half
+        }
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            }
+            else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            }
+            else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            }
+            else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+}
@@ -0,0 +1,159 @@
+package logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte array the encoders write into. It is meant to be reused: after setLength(0)
+ * the same array is written again, so encoding allocates nothing once the array is big enough.
+ * Text is encoded as UTF-8 straight from the characters, without creating Strings.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class ByteBuilder {
+    private static final byte[] MIN_LONG = "-9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes;
+    private int length;
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    ByteBuilder(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    int length() {
+        return length;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return A copy of the written bytes.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    ByteBuilder append(byte b) {
+        ensure(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    ByteBuilder append(ByteBuilder other) {
+        ensure(other.length);
+        System.arraycopy(other.bytes, 0, bytes, length, other.length);
+        length += other.length;
+        return this;
+    }
+
+    /**
+     * Append text that is known to contain only ASCII characters.
+     */
+    ByteBuilder appendAscii(CharSequence text) {
+        int count = text.length();
+        ensure(count);
+        for (int i = 0; i < count; i++) {
+            bytes[length++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Append the characters text[start, end) encoded as UTF-8. A surrogate without its pair is written as '?'.
+     */
+    ByteBuilder appendUtf8(CharSequence text, int start, int end) {
+        ensure(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (length == bytes.length) {
+                    ensure(end - i);
+                }
+                bytes[length++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                ensure(2);
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensure(4);
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                append((byte) '?');
+            }
+            else {
+                ensure(3);
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Append the decimal digits of the value.
+     */
+    ByteBuilder appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            ensure(MIN_LONG.length);
+            System.arraycopy(MIN_LONG, 0, bytes, length, MIN_LONG.length);
+            length += MIN_LONG.length;
+            return this;
+        }
+        ensure(20);
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int end = length + digits(value);
+        length = end;
+        do {
+            bytes[--end] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return this;
+    }
+
+    /**
+     * Append the value the same way as StringBuilder.append(double) would, without creating a String.
+     */
+    ByteBuilder appendDouble(double value) {
+        scratch.setLength(0);
+        scratch.append(value);
+        return appendAscii(scratch);
+    }
+
+    /**
+     * @return The text decoded from UTF-8, only used where a String is needed anyway.
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int digits(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
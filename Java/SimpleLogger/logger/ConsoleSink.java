@@ -0,0 +1,28 @@
+package logger;
+
+import java.util.List;
+
+/**
+ * Prints the records to the standard output.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class ConsoleSink implements Sink {
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public void write(List<LogEntry> entries) {
+        for (LogEntry entry : entries) {
+            text.append(entry.getText()).append(System.lineSeparator());
+        }
+        System.out.print(text);
+        System.out.flush();
+        text.setLength(0);
+    }
+
+    @Override
+    public String toString() {
+        return "console";
+    }
+}
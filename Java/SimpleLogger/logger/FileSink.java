@@ -0,0 +1,48 @@
+package logger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the records into a log file that stays open until the sink is closed.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class FileSink implements Sink {
+    private final LogFile file;
+
+    /**
+     * @param baseName Path of the file without the extension (".log" is added).
+     * @param fsyncPolicy When to force the file to the disk.
+     * @param rollingPolicy When to continue in a new file.
+     * @throws IOException If the file could not be created.
+     */
+    public FileSink(String baseName, FsyncPolicy fsyncPolicy, RollingPolicy rollingPolicy) throws IOException {
+        file = new LogFile(baseName, fsyncPolicy, rollingPolicy);
+    }
+
+    /**
+     * Can be called from any thread.
+     *
+     * @param policy The new fsync policy.
+     */
+    public void setFsyncPolicy(FsyncPolicy policy) {
+        file.setFsyncPolicy(policy);
+    }
+
+    @Override
+    public void write(List<LogEntry> entries) throws IOException {
+        file.write(entries);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return "file";
+    }
+}
@@ -0,0 +1,78 @@
+package logger;
+
+/**
+ * Decides how often the log file is forced to the disk (fsync). Writing to the file only hands
+ * the data to the operating system, so without syncing the last messages can be lost if the
+ * machine crashes. Syncing more often is safer but slower.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public final class FsyncPolicy {
+    private static final FsyncPolicy NEVER = new FsyncPolicy(Long.MAX_VALUE, Long.MAX_VALUE, false);
+    private static final FsyncPolicy ON_ERROR = new FsyncPolicy(Long.MAX_VALUE, Long.MAX_VALUE, true);
+
+    private final long bytes;
+    private final long millis;
+    private final boolean onError;
+
+    private FsyncPolicy(long bytes, long millis, boolean onError) {
+        this.bytes = bytes;
+        this.millis = millis;
+        this.onError = onError;
+    }
+
+    /**
+     * Leave it to the operating system (default).
+     *
+     * @return The policy.
+     */
+    public static FsyncPolicy never() {
+        return NEVER;
+    }
+
+    /**
+     * Sync whenever at least the given number of bytes was written since the last sync.
+     *
+     * @param bytes Number of bytes, must be positive.
+     * @return The policy.
+     */
+    public static FsyncPolicy everyBytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Invalid number of bytes: " + bytes);
+        }
+        return new FsyncPolicy(bytes, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Sync on the first write that happens at least the given time after the last sync.
+     *
+     * @param millis Time in milliseconds, must be positive.
+     * @return The policy.
+     */
+    public static FsyncPolicy everyMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Invalid number of milliseconds: " + millis);
+        }
+        return new FsyncPolicy(Long.MAX_VALUE, millis, false);
+    }
+
+    /**
+     * Sync whenever the written messages include a message with level ERROR.
+     *
+     * @return The policy.
+     */
+    public static FsyncPolicy onError() {
+        return ON_ERROR;
+    }
+
+    /**
+     * @param unsyncedBytes Bytes written since the last sync.
+     * @param millisSinceSync Time since the last sync.
+     * @param hasError True if the written messages include an ERROR.
+     * @return True if the file should be synced now.
+     */
+    boolean shouldSync(long unsyncedBytes, long millisSinceSync, boolean hasError) {
+        return unsyncedBytes >= bytes || millisSinceSync >= millis || (onError && hasError);
+    }
+}
@@ -0,0 +1,81 @@
+package logger;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One JSON object per line, for log shippers that should not have to parse the text format:
+ * {"time":1545523200000,"level":"INFO","msg":"done","user":"luka","ms":12}
+ * The time is in milliseconds since the epoch and the fields follow "msg" in the order they were added.
+ * Keys are not checked for duplicates.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class JsonEncoder extends LogEncoder {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    void begin(ByteBuilder out, long time, Level level) {
+        out.appendAscii("{\"time\":").appendLong(time);
+        out.appendAscii(",\"level\":\"").appendAscii(level.name()).appendAscii("\",\"msg\":");
+    }
+
+    @Override
+    void message(ByteBuilder out, CharSequence text, int start, int end) {
+        string(out, text, start, end);
+    }
+
+    @Override
+    void end(ByteBuilder out) {
+        out.append((byte) '}');
+    }
+
+    @Override
+    void key(ByteBuilder out, String key) {
+        out.append((byte) ',');
+        string(out, key, 0, key.length());
+        out.append((byte) ':');
+    }
+
+    @Override
+    void value(ByteBuilder out, CharSequence value) {
+        string(out, value, 0, value.length());
+    }
+
+    @Override
+    void value(ByteBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // not allowed as JSON numbers
+            out.append((byte) '"').appendDouble(value).append((byte) '"');
+            return;
+        }
+        out.appendDouble(value);
+    }
+
+    /**
+     * Write text[start, end) as a quoted JSON string. Characters that need no escaping are copied in runs.
+     */
+    private static void string(ByteBuilder out, CharSequence text, int start, int end) {
+        out.append((byte) '"');
+        int run = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\') {
+                continue;
+            }
+            out.appendUtf8(text, run, i).append((byte) '\\');
+            switch (c) {
+                case '"': out.append((byte) '"'); break;
+                case '\\': out.append((byte) '\\'); break;
+                case '\n': out.append((byte) 'n'); break;
+                case '\r': out.append((byte) 'r'); break;
+                case '\t': out.append((byte) 't'); break;
+                default:
+                    out.appendAscii("u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    break;
+            }
+            run = i + 1;
+        }
+        out.appendUtf8(text, run, end).append((byte) '"');
+    }
+}
@@ -8,13 +8,30 @@ package logger;
  */
 public enum Level {
     /**The message marked with INFO represents general information about the state of the program at that point.*/
-    INFO,
+    INFO(1),
     /**The message marked with WARNING requires more attention, but reports no errors in the workflow of the program.*/
-    WARNING,
+    WARNING(2),
     /**The message marked with ERROR tells that something went wrong in the program (important exception caught etc.).
      * This messages are very important as they probably compromised the normal/expected workflow of the program*/
-    ERROR,
+    ERROR(3),
     /**The message marked with DEBUG, is used to log messages that help debugging. Generally, there should be no
      * such logs in the production code.*/
-    DEBUG
+    DEBUG(0);
+
+    /**Higher value means more important message. Declaration order is kept as it was for compatibility.*/
+    private final int severity;
+
+    Level(int severity) {
+        this.severity = severity;
+    }
+
+    /**
+     * Check if this level is at least as important as the other one (DEBUG < INFO < WARNING < ERROR).
+     *
+     * @param other Level to compare with.
+     * @return True if this level is at least as important as the other level.
+     */
+    public boolean isAtLeast(Level other) {
+        return severity >= other.severity;
+    }
 }
@@ -0,0 +1,24 @@
+package logger;
+
+/**
+ * Wall clock with nanosecond resolution that does not allocate (unlike Instant.now()).
+ * The epoch time is captured once and then advanced by System.nanoTime(), so the values
+ * never go backwards within a run.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class LogClock {
+    private static final long BASE_EPOCH_NANOS = System.currentTimeMillis() * 1_000_000L;
+    private static final long BASE_NANO_TIME = System.nanoTime();
+
+    private LogClock() {
+    }
+
+    /**
+     * @return Nanoseconds since the epoch.
+     */
+    static long epochNanos() {
+        return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANO_TIME);
+    }
+}
@@ -0,0 +1,83 @@
+package logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses closed log files with gzip on a background thread and deletes the oldest
+ * compressed files that exceed the retention count.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class LogCompressor {
+    private final int retention;
+    private final Deque<File> archived = new ArrayDeque<>(); // only used by the compressor thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "logger-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param retention Number of compressed files to keep. 0 to keep all of them.
+     */
+    LogCompressor(int retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * Schedule compression of a closed log file. Returns immediately.
+     *
+     * @param file Closed log file.
+     */
+    void submit(File file) {
+        executor.execute(() -> compress(file));
+    }
+
+    /**
+     * Finish the scheduled compressions (waits for at most the given time).
+     */
+    void stop(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compress(File file) {
+        File gz = new File(file.getPath() + ".gz");
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gz), 64 * 1024)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Could not compress the log file " + file + ": " + e.getMessage());
+            gz.delete();
+            return;
+        }
+        file.delete();
+
+        archived.addLast(gz);
+        while (retention > 0 && archived.size() > retention) {
+            archived.removeFirst().delete();
+        }
+    }
+}
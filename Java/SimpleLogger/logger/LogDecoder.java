@@ -0,0 +1,124 @@
+package logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns binary log segments (written by the logger started with Logger.startBinaryLogger()) back into
+ * the usual text format.
+ * <p>
+ * Usage: java logger.LogDecoder log/debug_log_20190101_120000_0.bin [more segments...]
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class LogDecoder {
+    private static final Level[] LEVELS = Level.values();
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java logger.LogDecoder <segment.bin>...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            try {
+                decode(Paths.get(arg), System.out);
+            }
+            catch (IOException | RuntimeException e) {
+                System.err.println("Could not decode " + arg + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+    }
+
+    /**
+     * Print all the records of a segment, one per line, in the same format as the text logger.
+     *
+     * @param segment Segment file to decode.
+     * @param out Where to print the records.
+     * @throws IOException If the file could not be read or is not a binary log segment.
+     */
+    public static void decode(Path segment, PrintStream out) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.remaining() < 8 || in.getInt() != BinaryLogWriter.MAGIC) {
+            throw new IOException("Not a binary log segment.");
+        }
+        int version = in.getInt();
+        if (version != BinaryLogWriter.VERSION) {
+            throw new IOException("Unsupported version: " + version);
+        }
+
+        Map<Integer, String> templates = new HashMap<>();
+        StringBuilder line = new StringBuilder();
+        StringBuilder message = new StringBuilder();
+        while (in.hasRemaining()) {
+            byte type = in.get();
+            if (type == BinaryLogWriter.END) {
+                break;
+            }
+            else if (type == BinaryLogWriter.TEMPLATE) {
+                int id = in.getInt();
+                templates.put(id, readString(in));
+            }
+            else if (type == BinaryLogWriter.RECORD) {
+                long nanos = in.getLong();
+                Level level = LEVELS[in.get()];
+                in.getLong(); // thread id, not part of the text format
+                String template = templates.get(in.getInt());
+                int argCount = in.get();
+
+                message.setLength(0);
+                int start = 0;
+                for (int i = 0; i < argCount; i++) {
+                    Object arg = readArg(in);
+                    int placeholder = template.indexOf("{}", start);
+                    if (placeholder < 0) {
+                        continue; // extra arguments are ignored, as in MessageFormatter
+                    }
+                    message.append(template, start, placeholder).append(arg);
+                    start = placeholder + 2;
+                }
+                message.append(template, start, template.length());
+
+                line.setLength(0);
+                Logger.format(line, nanos / 1_000_000, level, message.toString());
+                out.println(line);
+            }
+            else {
+                throw new IOException("Corrupted segment at position " + (in.position() - 1));
+            }
+        }
+    }
+
+    private static Object readArg(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case BinaryLogWriter.ARG_NULL: return null;
+            case BinaryLogWriter.ARG_STRING: return readString(in);
+            case BinaryLogWriter.ARG_LONG: return in.getLong();
+            case BinaryLogWriter.ARG_INT: return in.getInt();
+            case BinaryLogWriter.ARG_DOUBLE: return in.getDouble();
+            case BinaryLogWriter.ARG_BOOLEAN: return in.get() != 0;
+            case BinaryLogWriter.ARG_CHAR: return in.getChar();
+            default: throw new IllegalStateException("Unknown argument type: " + type);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package logger;
+
+/**
+ * Turns records into the bytes written by the sinks. A record is written as begin(), message(),
+ * the fields (each a key() followed by one of the values) and end(). The fields of a structured record
+ * are encoded separately while they are added (see LogEvent) and copied in before end().
+ * Encoders keep no state, so one instance is shared by all the threads.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+abstract class LogEncoder {
+
+    /**
+     * Encode a whole record.
+     *
+     * @param out Where to write the record (without the new line).
+     * @param time Time of the record in milliseconds.
+     * @param level The importance of the record.
+     * @param message Text containing the message.
+     * @param start Index of the first character of the message.
+     * @param end Index after the last character of the message.
+     * @param fields Encoded fields of the record, or null if it has none.
+     */
+    final void encode(ByteBuilder out, long time, Level level, CharSequence message, int start, int end,
+                      ByteBuilder fields) {
+        begin(out, time, level);
+        message(out, message, start, end);
+        if (fields != null) {
+            out.append(fields);
+        }
+        end(out);
+    }
+
+    abstract void begin(ByteBuilder out, long time, Level level);
+
+    abstract void message(ByteBuilder out, CharSequence text, int start, int end);
+
+    abstract void end(ByteBuilder out);
+
+    abstract void key(ByteBuilder out, String key);
+
+    abstract void value(ByteBuilder out, CharSequence value);
+
+    abstract void value(ByteBuilder out, double value);
+
+    void value(ByteBuilder out, long value) {
+        out.appendLong(value);
+    }
+
+    void value(ByteBuilder out, boolean value) {
+        out.appendAscii(value ? "true" : "false");
+    }
+
+    void nullValue(ByteBuilder out) {
+        out.appendAscii("null");
+    }
+}
@@ -0,0 +1,55 @@
+package logger;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A formatted log record as it is handed to the sinks: the UTF-8 encoded text of the record
+ * (without the new line) together with its time and level.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public final class LogEntry {
+    private final long time;
+    private final Level level;
+    private final byte[] bytes;
+
+    LogEntry(long time, Level level, byte[] bytes) {
+        this.time = time;
+        this.level = level;
+        this.bytes = bytes;
+    }
+
+    /**
+     *
+     * @return Time of the record in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     *
+     * @return The importance of the record.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * The array is shared with the other sinks, so it must not be modified.
+     *
+     * @return UTF-8 encoded text of the record, without the new line.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     *
+     * @return Text of the record, without the new line.
+     */
+    public String getText() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,140 @@
+package logger;
+
+/**
+ * A structured record, created by Logger.at(level):
+ * Logger.at(Level.INFO).kv("user", id).kv("ms", time).log("done");
+ * Each field is encoded (in the format of the logger) as soon as it is added, into a buffer that belongs
+ * to the current thread, so no Strings or maps are created for the fields. For the same reason
+ * an event must be used right away by the thread that created it and must not be kept for later.
+ * If the level is disabled, at() returns an event that ignores everything.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public final class LogEvent {
+    static final LogEvent DISABLED = new LogEvent();
+
+    private final ByteBuilder fields = new ByteBuilder(256);
+    private final ByteBuilder line = new ByteBuilder(512);
+    private Level level; // null if disabled
+    private LogEncoder encoder;
+    private boolean busy;
+
+    LogEvent() {
+    }
+
+    /**
+     * Start a new record. The event is busy until it is logged, so a record started while the values of
+     * this one are computed (e.g. Logger.at(INFO).kv("r", compute()), where compute() logs) gets an event
+     * of its own. An event that is never logged stays busy, later records of the thread then use new events.
+     */
+    LogEvent start(Level level, LogEncoder encoder) {
+        this.level = level;
+        this.encoder = encoder;
+        fields.setLength(0);
+        busy = true;
+        return this;
+    }
+
+    /**
+     * @return True from start() until the record is logged.
+     */
+    boolean isBusy() {
+        return busy;
+    }
+
+    /**
+     * Add a field.
+     *
+     * @param key Name of the field.
+     * @param value Value of the field.
+     * @return This event.
+     */
+    public LogEvent kv(String key, String value) {
+        if (level != null) {
+            encoder.key(fields, key);
+            if (value == null) {
+                encoder.nullValue(fields);
+            }
+            else {
+                encoder.value(fields, value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @see #kv(String, String)
+     */
+    public LogEvent kv(String key, long value) {
+        if (level != null) {
+            encoder.key(fields, key);
+            encoder.value(fields, value);
+        }
+        return this;
+    }
+
+    /**
+     * @see #kv(String, String)
+     */
+    public LogEvent kv(String key, double value) {
+        if (level != null) {
+            encoder.key(fields, key);
+            encoder.value(fields, value);
+        }
+        return this;
+    }
+
+    /**
+     * @see #kv(String, String)
+     */
+    public LogEvent kv(String key, boolean value) {
+        if (level != null) {
+            encoder.key(fields, key);
+            encoder.value(fields, value);
+        }
+        return this;
+    }
+
+    /**
+     * Add a field. Numbers and booleans are written as such, anything else as the text of toString().
+     * Use the other overloads for primitive values, they do not box them or create a String.
+     *
+     * @param key Name of the field.
+     * @param value Value of the field.
+     * @return This event.
+     */
+    public LogEvent kv(String key, Object value) {
+        if (level == null) {
+            return this;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return kv(key, ((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return kv(key, ((Number) value).doubleValue());
+        }
+        if (value instanceof Boolean) {
+            return kv(key, ((Boolean) value).booleanValue());
+        }
+        return kv(key, String.valueOf(value));
+    }
+
+    /**
+     * Log the record with all the fields added so far. The event must not be used afterwards.
+     *
+     * @param message Message that we want to log.
+     */
+    public void log(String message) {
+        if (level == null) {
+            return;
+        }
+        try {
+            Logger.log(level, message == null ? "null" : message, encoder, fields, line);
+        }
+        finally {
+            busy = false;
+            level = null;
+        }
+    }
+}
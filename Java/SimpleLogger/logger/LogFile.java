@@ -0,0 +1,151 @@
+package logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The log file, kept open for the whole run. Records are copied into a set of reusable
+ * buffers and written with a single gathering write, so writing does not open or close
+ * anything and allocates no new buffers once they have grown to the usual batch size.
+ * If a rolling policy is set, the file is split into segments: baseName.log, baseName_1.log, ...
+ * Closed segments are handed to the LogCompressor, so rolling over only costs closing and opening a file.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class LogFile {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final String baseName;
+    private final RollingPolicy rollingPolicy;
+    private final LogCompressor compressor;
+    private File file;
+    private FileChannel channel;
+    private int segment;
+    private long segmentBytes;
+    private long segmentOpened;
+    private ByteBuffer[] chunks = new ByteBuffer[] { ByteBuffer.allocateDirect(CHUNK_SIZE) };
+    private int used;
+
+    private FsyncPolicy fsyncPolicy;
+    private long unsyncedBytes;
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * @param baseName Path of the file without the extension.
+     * @param fsyncPolicy When to force the file to the disk.
+     * @param rollingPolicy When to start a new segment.
+     */
+    LogFile(String baseName, FsyncPolicy fsyncPolicy, RollingPolicy rollingPolicy) throws IOException {
+        this.baseName = baseName;
+        this.fsyncPolicy = fsyncPolicy;
+        this.rollingPolicy = rollingPolicy;
+        compressor = rollingPolicy == RollingPolicy.none() ? null : new LogCompressor(rollingPolicy.getRetention());
+        open();
+    }
+
+    synchronized void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Append the records, each followed by a new line.
+     *
+     * @param entries Records to write.
+     */
+    synchronized void write(List<LogEntry> entries) throws IOException {
+        long now = System.currentTimeMillis();
+        if (segmentBytes > 0 && rollingPolicy.shouldRoll(segmentBytes, now - segmentOpened)) {
+            roll();
+        }
+        used = 0;
+        chunks[0].clear();
+        boolean hasError = false;
+        for (LogEntry entry : entries) {
+            put(entry.getBytes());
+            put(LINE_SEPARATOR);
+            hasError |= entry.getLevel() == Level.ERROR;
+        }
+
+        long total = 0;
+        for (int i = 0; i <= used; i++) {
+            chunks[i].flip();
+            total += chunks[i].remaining();
+        }
+        long written = 0;
+        while (written < total) {
+            written += channel.write(chunks, 0, used + 1);
+        }
+
+        segmentBytes += total;
+        unsyncedBytes += total;
+        if (unsyncedBytes > 0 && fsyncPolicy.shouldSync(unsyncedBytes, now - lastSync, hasError)) {
+            channel.force(false);
+            unsyncedBytes = 0;
+            lastSync = now;
+        }
+    }
+
+    synchronized void close() throws IOException {
+        closeSegment();
+        if (compressor != null) {
+            compressor.stop(10_000);
+        }
+    }
+
+    private void open() throws IOException {
+        String name = segment == 0 ? baseName + ".log" : baseName + "_" + segment + ".log";
+        file = new File(name);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+        segmentOpened = System.currentTimeMillis();
+    }
+
+    private void roll() throws IOException {
+        closeSegment();
+        compressor.submit(file);
+        segment++;
+        open();
+    }
+
+    private void closeSegment() throws IOException {
+        if (unsyncedBytes > 0 && fsyncPolicy != FsyncPolicy.never()) {
+            channel.force(false);
+            unsyncedBytes = 0;
+        }
+        channel.close();
+    }
+
+    private void put(byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ByteBuffer chunk = chunks[used];
+            if (!chunk.hasRemaining()) {
+                nextChunk();
+                continue;
+            }
+            int length = Math.min(chunk.remaining(), bytes.length - offset);
+            chunk.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void nextChunk() {
+        used++;
+        if (used == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[used] == null) {
+            chunks[used] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        chunks[used].clear();
+    }
+}
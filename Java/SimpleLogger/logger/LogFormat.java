@@ -0,0 +1,24 @@
+package logger;
+
+/**
+ * How the records are encoded for the sinks (see Logger.setFormat()).
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public enum LogFormat {
+    /**"yyyy/MM/dd HH:mm:ss [LEVEL] message key=value ...", the default.*/
+    TEXT(new TextEncoder()),
+    /**One JSON object per line: {"time":...,"level":"INFO","msg":"message","key":value,...}*/
+    JSON(new JsonEncoder());
+
+    private final LogEncoder encoder;
+
+    LogFormat(LogEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    LogEncoder encoder() {
+        return encoder;
+    }
+}
@@ -0,0 +1,27 @@
+package logger;
+
+/**
+ * A single slot of the ring buffer. Slots are allocated once and reused, so the fields are
+ * only valid between claiming and releasing the slot.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class LogRecord {
+    long time;
+    Level level;
+    String message;
+    byte[] encoded; // set instead of the message for records that are already encoded
+
+    void set(long time, Level level, String message, byte[] encoded) {
+        this.time = time;
+        this.level = level;
+        this.message = message;
+        this.encoded = encoded;
+    }
+
+    void clear() {
+        message = null;
+        encoded = null;
+    }
+}
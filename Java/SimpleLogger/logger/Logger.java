@@ -1,8 +1,20 @@
 package logger;
 
-import java.io.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 /**
  * This class unifies the output of the debug statements.
@@ -11,17 +23,38 @@ import java.text.SimpleDateFormat;
  * @version 1.0
  */
 public class Logger {
-    private static boolean consoleOutput;
-    private static boolean fileOutput;
+    /** Default number of records a sink writes at once. */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int SINK_QUEUE_CAPACITY = 64 * 1024;
+
     private static boolean autoFlush;
 
-    private static StringBuffer buffer = new StringBuffer();
-    private static File file;
+    private static final Set<ThreadBuffer> threadBuffers = ConcurrentHashMap.newKeySet();
+    private static final ThreadLocal<ThreadBuffer> threadBuffer = ThreadLocal.withInitial(() -> {
+        ThreadBuffer buffer = new ThreadBuffer();
+        threadBuffers.add(buffer);
+        return buffer;
+    });
+    private static final ThreadLocal<LogEvent> threadEvent = ThreadLocal.withInitial(LogEvent::new);
+    private static final Queue<RecordChunk> freeChunks = new ConcurrentLinkedQueue<>();
+    private static final Object flushLock = new Object();
+    private static final LoggerMetrics metrics = new LoggerMetrics();
+    private static final SinkDispatcher dispatcher = new SinkDispatcher(metrics);
+    private static boolean mbeanRegistered;
+    private static boolean shutdownHookAdded;
+    private static FileSink fileSink;
+    private static FsyncPolicy fsyncPolicy = FsyncPolicy.never();
+    private static RollingPolicy rollingPolicy = RollingPolicy.none();
     private static boolean started;
+    private static volatile Level minimumLevel = Level.DEBUG;
+    private static volatile LogFormat format = LogFormat.TEXT;
+    private static AsyncWriter asyncWriter; // null when logging synchronously
+    private static BinaryLogWriter binaryWriter; // null when logging as text
 
     /**
      * This needs to be called in the main method and should be called only once.
      * This ensures that each run is saving logs into a unique file.
+     * The console and the file are added as sinks (see addSink()), each written by its own thread.
      *
      * @param consoleOutputIn True if we want to output to the console, false if not.
      * @param fileOutputIn True if we want to output to the file, false if not.
@@ -29,24 +62,29 @@ public class Logger {
      *                    N.B. that outputting to the file on each log might impact overall performance a bit.
      */
     public static void startLogger(boolean consoleOutputIn, boolean fileOutputIn, boolean autoFlushIn) {
+        registerMBean();
+        addShutdownHook();
         started = true;
-        consoleOutput = consoleOutputIn;
-        fileOutput = fileOutputIn;
         autoFlush = autoFlushIn;
-        if (fileOutput) {
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Timestamp(System.currentTimeMillis()));
-            String filename = "log/debug_log_" + timestamp + ".log"; // append timestamp and extension
-            file = new File(filename);
+        String fileError = null;
+        if (fileOutputIn) {
             try {
-                file.createNewFile();
+                fileSink = new FileSink(newFileName(), fsyncPolicy, rollingPolicy);
+                addSink(fileSink, Level.DEBUG, DEFAULT_BATCH_SIZE, OverflowPolicy.BLOCK);
             }
             catch (IOException e) {
-                fileOutput = false;
-                consoleOutput = true;
-                log("Could not create new log file. Error message:\n" + e.getMessage(), Level.ERROR);
-                log("Logging to the console only.", Level.WARNING);
+                consoleOutputIn = true;
+                fileError = e.getMessage();
             }
         }
+        if (consoleOutputIn) {
+            // a slow console drops messages rather than hold back the file
+            addSink(new ConsoleSink(), Level.DEBUG, DEFAULT_BATCH_SIZE, OverflowPolicy.DROP_DEBUG);
+        }
+        if (fileError != null) {
+            log("Could not create new log file. Error message:\n" + fileError, Level.ERROR);
+            log("Logging to the console only.", Level.WARNING);
+        }
         log("Logger started.");
     }
 
@@ -59,34 +97,214 @@ public class Logger {
     }
 
     /**
-     * Formats the new message and saves it to the buffer.
+     * Starts the logger in binary mode. Instead of formatting the messages, log() writes the time, level,
+     * thread, message pattern and arguments in a fixed binary layout into memory-mapped files
+     * log/debug_log_[timestamp]_[n].bin. Use LogDecoder to read them as text later.
+     * Nothing is printed to the console and calling flush() is not needed.
+     * If the file cannot be created, the logger falls back to the console.
+     *
+     * @param segmentSize Size of each file in bytes (at least 4 MB), a new file is started when one is full.
+     */
+    public static void startBinaryLogger(int segmentSize) {
+        try {
+            binaryWriter = new BinaryLogWriter(newFileName(), segmentSize, metrics);
+        }
+        catch (IOException e) {
+            startLogger(true, false, false);
+            log("Could not create new binary log file. Error message:\n" + e.getMessage(), Level.ERROR);
+            log("Logging to the console only.", Level.WARNING);
+            return;
+        }
+        startLogger(false, false, false);
+    }
+
+    /**
+     * Starts the logger in asynchronous mode. Calls to log() only publish the message into a bounded
+     * lock-free ring buffer and a single background thread formats and writes the messages in batches.
+     * Use this when many threads are logging and should not wait for each other or for the outputs.
+     * Messages are flushed continuously, so calling flush() is only needed to wait until they are handed to the sinks.
+     *
+     * @param consoleOutputIn True if we want to output to the console, false if not.
+     * @param fileOutputIn True if we want to output to the file, false if not.
+     * @param capacity Number of messages the ring buffer can hold (rounded up to a power of two).
+     * @param policy What to do with new messages when the ring buffer is full.
+     */
+    public static void startAsyncLogger(boolean consoleOutputIn, boolean fileOutputIn, int capacity, OverflowPolicy policy) {
+        asyncWriter = new AsyncWriter(capacity, policy, metrics);
+        startLogger(consoleOutputIn, fileOutputIn, false);
+    }
+
+    /**
+     * Add an output to the logger. Every sink has its own queue and thread, so a slow sink does not hold back
+     * the others as long as there is room in its queue. The policy decides what happens when the queue is full:
+     * only BLOCK makes the other sinks wait (use it for the outputs that must not lose records, like the file),
+     * DROP and DROP_DEBUG drop the records of this sink instead (see getDroppedCount()).
+     * Sinks can be added before or after the logger is started and are closed and removed by stopLogger().
+     *
+     * @param sink The output.
+     * @param minimumLevel Least important level written to this sink.
+     * @param batchSize Maximum number of records the sink writes at once.
+     * @param policy What to do with new records when the queue of the sink is full.
+     */
+    public static void addSink(Sink sink, Level minimumLevel, int batchSize, OverflowPolicy policy) {
+        dispatcher.add(sink, minimumLevel, batchSize, policy, SINK_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @see #addSink(Sink, Level, int, OverflowPolicy)
+     * The sink gets all the records, in batches of DEFAULT_BATCH_SIZE. If it cannot keep up, its DEBUG records
+     * and then the others are dropped (OverflowPolicy.DROP_DEBUG), so it never holds back the other sinks.
+     *
+     * @param sink The output.
+     */
+    public static void addSink(Sink sink) {
+        addSink(sink, Level.DEBUG, DEFAULT_BATCH_SIZE, OverflowPolicy.DROP_DEBUG);
+    }
+
+    /**
+     * Flushes all the remaining messages, waits until the sinks have written them and stops the logger.
+     * Any later calls to log() are ignored until the logger is started again.
+     */
+    public static synchronized void stopLogger() {
+        if (!started) {
+            return;
+        }
+        flush();
+        started = false;
+        if (asyncWriter != null) {
+            asyncWriter.stop();
+            asyncWriter = null;
+        }
+        if (binaryWriter != null) {
+            try {
+                binaryWriter.close();
+            }
+            catch (IOException e) {
+                System.err.println("Could not close the binary log file: " + e.getMessage());
+            }
+            binaryWriter = null;
+        }
+        dispatcher.stop();
+        fileSink = null;
+    }
+
+    /**
+     * Set how often the log file is forced to the disk. Can be changed at any time.
+     *
+     * @param policy The new policy (default is FsyncPolicy.never()).
+     */
+    public static void setFsyncPolicy(FsyncPolicy policy) {
+        fsyncPolicy = policy;
+        FileSink current = fileSink;
+        if (current != null) {
+            current.setFsyncPolicy(policy);
+        }
+    }
+
+    /**
+     * @return Number of messages dropped because the ring buffer (asynchronous mode only) or the queue of a sink
+     *         was full, or because a sink failed to write them.
+     */
+    public static long getDroppedCount() {
+        return metrics.getDropped();
+    }
+
+    /**
+     * Use this to check what logging costs and to alert when the logger cannot keep up (growing queue depth
+     * or dropped messages). The same counters are available through JMX as "logger:type=Logger".
+     *
+     * @return A snapshot of the logger counters.
+     */
+    public static LoggerStats stats() {
+        AsyncWriter writer = asyncWriter;
+        long queueDepth = (writer == null ? 0 : writer.getQueueDepth()) + dispatcher.getQueueDepth();
+        return metrics.snapshot(queueDepth);
+    }
+
+    /**
+     * Set when the log file should be split into a new file. Closed files are compressed in the background.
+     * Must be called before the logger is started.
+     *
+     * @param policy The new policy (default is RollingPolicy.none()).
+     */
+    public static void setRollingPolicy(RollingPolicy policy) {
+        rollingPolicy = policy;
+    }
+
+    /**
+     * Set the least important level that is still logged, e.g. Level.INFO in production to skip all
+     * the DEBUG messages. Messages below this level are discarded before they are formatted.
+     * Can be changed at any time.
+     *
+     * @param level The new minimum level (default is DEBUG, so everything is logged).
+     */
+    public static void setMinimumLevel(Level level) {
+        minimumLevel = level;
+    }
+
+    /**
+     *
+     * @return The least important level that is still logged.
+     */
+    public static Level getMinimumLevel() {
+        return minimumLevel;
+    }
+
+    /**
+     * Set how the records are written by the sinks, e.g. LogFormat.JSON if the logs are read by a log shipper.
+     * Can be changed at any time, records that are already encoded are not changed.
+     * In binary mode this has no effect, the binary files are always decoded as text.
+     *
+     * @param logFormat The new format (default is LogFormat.TEXT).
+     */
+    public static void setFormat(LogFormat logFormat) {
+        format = logFormat;
+    }
+
+    /**
+     *
+     * @return How the records are written by the sinks.
+     */
+    public static LogFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Use this to guard expensive computations that are only needed for logging.
+     *
+     * @param level The importance of the message.
+     * @return True if a message with this level would be logged, false otherwise.
+     */
+    public static boolean isEnabled(Level level) {
+        return started && level.isAtLeast(minimumLevel);
+    }
+
+    /**
+     * Saves the new message to the buffer of the current thread, it is encoded (see setFormat()) when flushed.
      * Call flush() if you want to show the buffered messages.
      *
      * @param message Message that we want to log.
      * @param level The importance of the message.
      */
     public static void log(String message, Level level) {
-        if (!started) {
+        if (!isEnabled(level)) {
             return;
         }
-        String timestamp = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(new Timestamp(System.currentTimeMillis()));
-        buffer.append(timestamp).append(" ");
-
-        switch (level) {
-            case INFO: buffer.append("[INFO]"); break;
-            case WARNING: buffer.append("[WARNING]"); break;
-            case ERROR: buffer.append("[ERROR]"); break;
-            case DEBUG: buffer.append("[DEBUG]"); break;
-            default: buffer.append("[unknown]"); break;
+        metrics.logged(level);
+        BinaryLogWriter binary = binaryWriter;
+        if (binary != null) {
+            binary.log(level, message);
+            return;
         }
-
-        buffer.append(" ").append(message);
+        AsyncWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.publish(System.currentTimeMillis(), level, message);
+            return;
+        }
+        threadBuffer.get().add(LogClock.epochNanos(), level, message);
         if (autoFlush) {
             flush();
         }
-        else {
-            buffer.append("\n");
-        }
     }
 
     /**
@@ -100,34 +318,300 @@ public class Logger {
     }
 
     /**
-     * Displays the buffered messages into either the console or a file, depends on the
-     * flags set at the beginning of the program.
+     * @see #log(String, Level)
+     * The message is only created if the level is enabled.
+     *
+     * @param level The importance of the message.
+     * @param message Creates the message that we want to log.
+     */
+    public static void log(Level level, Supplier<String> message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        log(message.get(), level);
+    }
+
+    /**
+     * @see #log(String, Level)
+     * The message is only formatted if the level is enabled. Each "{}" in the pattern is replaced by the
+     * next argument, e.g. log(Level.DEBUG, "x={}", x).
+     *
+     * @param level The importance of the message.
+     * @param pattern Message with "{}" placeholders.
+     * @param arg Value of the placeholder.
+     */
+    public static void log(Level level, String pattern, Object arg) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        BinaryLogWriter binary = binaryWriter;
+        if (binary != null) {
+            metrics.logged(level);
+            binary.log(level, pattern, 1, arg, null);
+            return;
+        }
+        log(MessageFormatter.format(pattern, arg), level);
+    }
+
+    /**
+     * @see #log(Level, String, Object)
+     *
+     * @param level The importance of the message.
+     * @param pattern Message with "{}" placeholders.
+     * @param arg1 Value of the first placeholder.
+     * @param arg2 Value of the second placeholder.
+     */
+    public static void log(Level level, String pattern, Object arg1, Object arg2) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        BinaryLogWriter binary = binaryWriter;
+        if (binary != null) {
+            metrics.logged(level);
+            binary.log(level, pattern, 2, arg1, arg2);
+            return;
+        }
+        log(MessageFormatter.format(pattern, arg1, arg2), level);
+    }
+
+    /**
+     * @see #log(Level, String, Object)
+     * N.B. that the array for the arguments is created even if the level is disabled, use the
+     * overloads with one or two arguments (or isEnabled()) on hot paths.
+     *
+     * @param level The importance of the message.
+     * @param pattern Message with "{}" placeholders.
+     * @param args Values of the placeholders.
+     */
+    public static void log(Level level, String pattern, Object... args) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        BinaryLogWriter binary = binaryWriter;
+        if (binary != null) {
+            metrics.logged(level);
+            binary.log(level, pattern, args);
+            return;
+        }
+        log(MessageFormatter.format(pattern, args), level);
+    }
+
+    /**
+     * Start a structured record with key/value fields, e.g.
+     * Logger.at(Level.INFO).kv("user", id).kv("ms", time).log("done");
+     * The fields are encoded as they are added, straight into a reusable buffer of the current thread,
+     * and end up as separate JSON properties (LogFormat.JSON) or as key=value after the message (LogFormat.TEXT).
+     * If the level is disabled, the returned event ignores the fields and the message.
+     *
+     * @param level The importance of the record.
+     * @return The record, which must be logged right away by the current thread (see LogEvent).
+     */
+    public static LogEvent at(Level level) {
+        if (!isEnabled(level)) {
+            return LogEvent.DISABLED;
+        }
+        LogEvent event = threadEvent.get();
+        if (event.isBusy()) {
+            event = new LogEvent(); // a record started while the fields of another one are computed
+        }
+        // binary files are decoded as text, so the fields must be text as well
+        return event.start(level, binaryWriter != null ? LogFormat.TEXT.encoder() : format.encoder());
+    }
+
+    /**
+     * Logs a structured record (see LogEvent.log()).
+     *
+     * @param level The importance of the record.
+     * @param message Message that we want to log.
+     * @param encoder Encoder that was used for the fields.
+     * @param fields The encoded fields.
+     * @param line Buffer for encoding the whole record.
+     */
+    static void log(Level level, String message, LogEncoder encoder, ByteBuilder fields, ByteBuilder line) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        metrics.logged(level);
+        BinaryLogWriter binary = binaryWriter;
+        if (binary != null) {
+            binary.log(level, message + fields);
+            return;
+        }
+        long time = LogClock.epochNanos();
+        line.setLength(0);
+        encoder.encode(line, time / 1_000_000, level, message, 0, message.length(), fields);
+        byte[] bytes = line.toByteArray();
+        AsyncWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.publish(time / 1_000_000, level, bytes);
+            return;
+        }
+        threadBuffer.get().add(time, level, bytes);
+        if (autoFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands the buffered messages over to the sinks (console, file, ...), which write them on their own threads,
+     * and waits until the sinks have written them. The messages of all the threads are merged in the order
+     * they were logged. In asynchronous mode this also waits for the writer thread to hand over all the messages
+     * logged so far. In binary mode the messages are already in the file, so this does nothing.
      */
     public static void flush() {
-        if (!started) {
+        if (!started || binaryWriter != null) {
             return;
         }
-        if (fileOutput) {
-            FileWriter fw = null;
-            BufferedWriter bw = null;
-            PrintWriter out = null;
-            try {
-                fw = new FileWriter(file, true);
-                bw = new BufferedWriter(fw);
-                out = new PrintWriter(bw);
-                out.println(buffer);
-                out.close();
-                bw.close();
-                fw.close();
+        AsyncWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.flush();
+        }
+        else {
+            dispatchBuffered();
+        }
+        dispatcher.awaitWritten();
+    }
+
+    /**
+     * Hands the messages in the buffers of all the threads over to the sinks.
+     */
+    private static void dispatchBuffered() {
+        synchronized (flushLock) {
+            List<RecordChunk> chunks = new ArrayList<>();
+            for (ThreadBuffer buffer : threadBuffers) {
+                if (buffer.isOrphaned()) {
+                    threadBuffers.remove(buffer); // drained below for the last time
+                }
+                buffer.drainTo(chunks);
             }
-            catch (IOException e) {
-                consoleOutput = true;
-                log("Could not flush to the log file. Error message:\n" + e.getMessage(), Level.WARNING);
+            if (chunks.isEmpty()) {
+                return;
+            }
+            dispatcher.dispatch(merge(chunks));
+            for (RecordChunk used : chunks) {
+                used.clear();
+                freeChunks.add(used);
+            }
+        }
+    }
+
+    /**
+     * Merges the records of the chunks by their time and encodes them. Records of the same thread are already in order.
+     *
+     * @param chunks Chunks to merge.
+     * @return The merged records.
+     */
+    private static List<LogEntry> merge(List<RecordChunk> chunks) {
+        // each cursor is {chunk index, record index}; the chunks of a thread are added oldest first, so on equal
+        // times the lower chunk index keeps the records of a thread in order across its chunks
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(chunks.size(), (a, b) -> {
+            int byTime = Long.compare(chunks.get(a[0]).times[a[1]], chunks.get(b[0]).times[b[1]]);
+            return byTime != 0 ? byTime : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < chunks.size(); i++) {
+            cursors.add(new int[] {i, 0});
+        }
+        List<LogEntry> entries = new ArrayList<>();
+        LogEncoder encoder = encoder();
+        ByteBuilder line = new ByteBuilder(512);
+        int[] cursor;
+        while ((cursor = cursors.poll()) != null) {
+            RecordChunk chunk = chunks.get(cursor[0]);
+            int index = cursor[1];
+            long time = chunk.times[index] / 1_000_000;
+            byte[] bytes = chunk.encoded[index];
+            if (bytes == null) {
+                line.setLength(0);
+                encoder.encode(line, time, chunk.levels[index], chunk.text, chunk.start(index), chunk.ends[index], null);
+                bytes = line.toByteArray();
+            }
+            entries.add(new LogEntry(time, chunk.levels[index], bytes));
+            if (++cursor[1] < chunk.size) {
+                cursors.add(cursor);
             }
         }
-        if (consoleOutput) {
-            System.out.println(buffer);
+        return entries;
+    }
+
+    /**
+     * Hands the records over to the sinks.
+     */
+    static void dispatch(List<LogEntry> entries) {
+        dispatcher.dispatch(entries);
+    }
+
+    /**
+     * @return Encoder of the current format.
+     */
+    static LogEncoder encoder() {
+        return format.encoder();
+    }
+
+    /**
+     * @return An empty chunk, reused if possible.
+     */
+    static RecordChunk newChunk() {
+        RecordChunk chunk = freeChunks.poll();
+        return chunk != null ? chunk : new RecordChunk();
+    }
+
+    /**
+     * Stops the logger when the JVM exits, so the records still queued for the sinks are written. Once per run.
+     */
+    private static synchronized void addShutdownHook() {
+        if (shutdownHookAdded) {
+            return;
+        }
+        shutdownHookAdded = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::stopLogger, "logger-shutdown"));
+    }
+
+    /**
+     * Makes the counters available through JMX, once per run.
+     */
+    private static synchronized void registerMBean() {
+        if (mbeanRegistered) {
+            return;
+        }
+        mbeanRegistered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new LoggerMXBeanImpl(), LoggerMXBean.class, true),
+                    new ObjectName("logger:type=Logger"));
         }
-        buffer = new StringBuffer();
+        catch (JMException e) {
+            System.err.println("Could not register the logger MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Name of a new log file for this run, without the extension.
+     */
+    private static String newFileName() {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Timestamp(System.currentTimeMillis()));
+        return "log/debug_log_" + timestamp; // append timestamp, the extension is added by the writer
+    }
+
+    /**
+     * Formats a single message (without the trailing new line).
+     *
+     * @param out Where to append the formatted message.
+     * @param time Time of the message in milliseconds.
+     * @param level The importance of the message.
+     * @param message Message that we want to log.
+     */
+    static void format(StringBuilder out, long time, Level level, String message) {
+        TimestampFormatter.format(time, out);
+        out.append(" ");
+
+        switch (level) {
+            case INFO: out.append("[INFO]"); break;
+            case WARNING: out.append("[WARNING]"); break;
+            case ERROR: out.append("[ERROR]"); break;
+            case DEBUG: out.append("[DEBUG]"); break;
+            default: out.append("[unknown]"); break;
+        }
+
+        out.append(" ").append(message);
     }
 }
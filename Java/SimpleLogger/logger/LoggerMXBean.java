@@ -0,0 +1,46 @@
+package logger;
+
+import java.util.Map;
+
+/**
+ * Management interface of the logger, registered as "logger:type=Logger" in the platform MBean server
+ * when the logger is started, so the counters can be watched with JConsole or any JMX monitoring.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public interface LoggerMXBean {
+
+    /** @return Number of messages logged per level. */
+    Map<String, Long> getRecordsPerLevel();
+
+    /** @return Number of messages logged with any level. */
+    long getTotalRecords();
+
+    /** @return Average number of messages logged per second. */
+    double getRecordsPerSecond();
+
+    /** @return Number of bytes written to all the outputs together. */
+    long getBytesWritten();
+
+    /** @return Number of batches written to the outputs. */
+    long getFlushCount();
+
+    /** @return Median time of writing a batch, in microseconds. */
+    long getFlushLatencyP50Micros();
+
+    /** @return 99th percentile of the time of writing a batch, in microseconds. */
+    long getFlushLatencyP99Micros();
+
+    /** @return Longest time of writing a batch, in microseconds. */
+    long getFlushLatencyMaxMicros();
+
+    /** @return Number of messages currently waiting to be written. */
+    long getQueueDepth();
+
+    /** @return Highest number of messages seen waiting in a buffer or queue. */
+    long getHighWaterMark();
+
+    /** @return Number of messages dropped. */
+    long getDroppedRecords();
+}
@@ -0,0 +1,73 @@
+package logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes Logger.stats() through JMX. Every attribute is read from a fresh snapshot.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class LoggerMXBeanImpl implements LoggerMXBean {
+
+    @Override
+    public Map<String, Long> getRecordsPerLevel() {
+        LoggerStats stats = Logger.stats();
+        Map<String, Long> records = new LinkedHashMap<>();
+        for (Level level : Level.values()) {
+            records.put(level.name(), stats.getRecords(level));
+        }
+        return records;
+    }
+
+    @Override
+    public long getTotalRecords() {
+        return Logger.stats().getTotalRecords();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return Logger.stats().getRecordsPerSecond();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return Logger.stats().getBytesWritten();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return Logger.stats().getFlushCount();
+    }
+
+    @Override
+    public long getFlushLatencyP50Micros() {
+        return Logger.stats().getFlushLatencyP50() / 1000;
+    }
+
+    @Override
+    public long getFlushLatencyP99Micros() {
+        return Logger.stats().getFlushLatencyP99() / 1000;
+    }
+
+    @Override
+    public long getFlushLatencyMaxMicros() {
+        return Logger.stats().getFlushLatencyMax() / 1000;
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return Logger.stats().getQueueDepth();
+    }
+
+    @Override
+    public long getHighWaterMark() {
+        return Logger.stats().getHighWaterMark();
+    }
+
+    @Override
+    public long getDroppedRecords() {
+        return Logger.stats().getDroppedRecords();
+    }
+}
@@ -0,0 +1,91 @@
+package logger;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the logger, updated by the logging, writer and sink threads. Cheap to update from many
+ * threads at once; read them through a LoggerStats snapshot.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class LoggerMetrics {
+    private final long startTime = System.currentTimeMillis();
+    private final LongAdder[] records = new LongAdder[Level.values().length];
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAccumulator highWaterMark = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    LoggerMetrics() {
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new LongAdder();
+        }
+    }
+
+    void logged(Level level) {
+        records[level.ordinal()].increment();
+    }
+
+    /**
+     * A batch was written to an output.
+     *
+     * @param bytes Number of bytes written.
+     * @param nanos How long the write took.
+     */
+    void flushed(long bytes, long nanos) {
+        bytesWritten.add(bytes);
+        flushes.increment();
+        flushLatency.record(nanos);
+    }
+
+    /**
+     * A segment of the binary log was forced to the disk, its bytes were already counted by written().
+     *
+     * @param nanos How long forcing it took.
+     */
+    void forced(long nanos) {
+        flushes.increment();
+        flushLatency.record(nanos);
+    }
+
+    /**
+     * Bytes written directly, without a batch (binary mode).
+     */
+    void written(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void dropped(long count) {
+        dropped.add(count);
+    }
+
+    /**
+     * @param depth Current number of records waiting in a buffer or queue.
+     */
+    void queueDepth(long depth) {
+        highWaterMark.accumulate(depth);
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    LoggerStats snapshot(long queueDepth) {
+        long[] perLevel = new long[records.length];
+        for (int i = 0; i < records.length; i++) {
+            perLevel[i] = records[i].sum();
+        }
+        long[] latency = {
+                flushLatency.percentile(50),
+                flushLatency.percentile(90),
+                flushLatency.percentile(99),
+                flushLatency.percentile(99.9),
+                flushLatency.percentile(100)
+        };
+        return new LoggerStats(System.currentTimeMillis() - startTime, perLevel, bytesWritten.sum(), flushes.sum(),
+                latency, queueDepth, highWaterMark.get(), dropped.sum());
+    }
+}
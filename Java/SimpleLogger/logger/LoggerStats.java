@@ -0,0 +1,163 @@
+package logger;
+
+/**
+ * A snapshot of the logger counters, see Logger.stats(). The counters cover the whole run of the program.
+ * A flush here is one batch written to a sink, or one segment of the binary log forced to the disk.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public final class LoggerStats {
+    private final long uptimeMillis;
+    private final long[] records;
+    private final long bytesWritten;
+    private final long flushCount;
+    private final long[] flushLatency; // p50, p90, p99, p99.9, max
+    private final long queueDepth;
+    private final long highWaterMark;
+    private final long droppedRecords;
+
+    LoggerStats(long uptimeMillis, long[] records, long bytesWritten, long flushCount, long[] flushLatency,
+                long queueDepth, long highWaterMark, long droppedRecords) {
+        this.uptimeMillis = uptimeMillis;
+        this.records = records;
+        this.bytesWritten = bytesWritten;
+        this.flushCount = flushCount;
+        this.flushLatency = flushLatency;
+        this.queueDepth = queueDepth;
+        this.highWaterMark = highWaterMark;
+        this.droppedRecords = droppedRecords;
+    }
+
+    /**
+     *
+     * @param level The importance of the messages.
+     * @return Number of messages logged with this level (only those that passed the minimum level).
+     */
+    public long getRecords(Level level) {
+        return records[level.ordinal()];
+    }
+
+    /**
+     *
+     * @return Number of messages logged with any level.
+     */
+    public long getTotalRecords() {
+        long total = 0;
+        for (long count : records) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     *
+     * @return Average number of messages logged per second since the metrics were created.
+     */
+    public double getRecordsPerSecond() {
+        return uptimeMillis == 0 ? 0 : getTotalRecords() * 1000.0 / uptimeMillis;
+    }
+
+    /**
+     *
+     * @return Number of bytes written to all the outputs together.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     *
+     * @return Number of batches written to the sinks and binary log segments forced to the disk.
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     *
+     * @return Median time of a flush, in nanoseconds.
+     */
+    public long getFlushLatencyP50() {
+        return flushLatency[0];
+    }
+
+    /**
+     *
+     * @return 90th percentile of the time of a flush, in nanoseconds.
+     */
+    public long getFlushLatencyP90() {
+        return flushLatency[1];
+    }
+
+    /**
+     *
+     * @return 99th percentile of the time of a flush, in nanoseconds.
+     */
+    public long getFlushLatencyP99() {
+        return flushLatency[2];
+    }
+
+    /**
+     *
+     * @return 99.9th percentile of the time of a flush, in nanoseconds.
+     */
+    public long getFlushLatencyP999() {
+        return flushLatency[3];
+    }
+
+    /**
+     *
+     * @return Longest time of a flush, in nanoseconds.
+     */
+    public long getFlushLatencyMax() {
+        return flushLatency[4];
+    }
+
+    /**
+     *
+     * @return Number of messages currently waiting in the ring buffer and the sink queues.
+     */
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     *
+     * @return Highest number of messages seen waiting in the ring buffer or in the queue of a sink.
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     *
+     * @return Number of messages dropped because a buffer was full or a sink failed to write them.
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /**
+     *
+     * @return Time since the metrics were created, in milliseconds.
+     */
+    public long getUptimeMillis() {
+        return uptimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "records=" + getTotalRecords()
+                + " (DEBUG=" + getRecords(Level.DEBUG) + ", INFO=" + getRecords(Level.INFO)
+                + ", WARNING=" + getRecords(Level.WARNING) + ", ERROR=" + getRecords(Level.ERROR) + ")"
+                + String.format(", rate=%.1f/s", getRecordsPerSecond())
+                + ", bytes=" + bytesWritten
+                + ", flushes=" + flushCount
+                + ", flushLatency[p50=" + flushLatency[0] / 1000 + "us, p99=" + flushLatency[2] / 1000
+                + "us, max=" + flushLatency[4] / 1000 + "us]"
+                + ", queueDepth=" + queueDepth
+                + ", highWaterMark=" + highWaterMark
+                + ", dropped=" + droppedRecords;
+    }
+}
@@ -0,0 +1,64 @@
+package logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the most recent records in memory, e.g. to show them in the application or to check them in tests.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class MemorySink implements Sink {
+    private final int capacity;
+    private final Deque<LogEntry> entries = new ArrayDeque<>();
+
+    /**
+     * @param capacity Maximum number of records kept, the oldest ones are discarded first.
+     */
+    public MemorySink(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void write(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            if (entries.size() == capacity) {
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+    }
+
+    /**
+     * Can be called from any thread.
+     *
+     * @return The records kept, oldest first.
+     */
+    public synchronized List<LogEntry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Can be called from any thread.
+     *
+     * @return Text of the records kept, oldest first.
+     */
+    public synchronized List<String> getLines() {
+        List<String> lines = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries) {
+            lines.add(entry.getText());
+        }
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return "memory";
+    }
+}
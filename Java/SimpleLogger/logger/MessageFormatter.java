@@ -0,0 +1,60 @@
+package logger;
+
+/**
+ * Fills in the "{}" placeholders of parameterized messages, e.g. "x={} y={}".
+ * Placeholders without a matching argument are kept as they are and extra arguments are ignored.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class MessageFormatter {
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * The reusable builder of a thread, busy while format() is using it.
+     */
+    private static final class Buffer {
+        final StringBuilder builder = new StringBuilder(128);
+        boolean busy;
+    }
+
+    private MessageFormatter() {
+    }
+
+    /**
+     * @param pattern Message with "{}" placeholders.
+     * @param args Values for the placeholders, in order.
+     * @return The formatted message.
+     */
+    static String format(String pattern, Object... args) {
+        Buffer buffer = BUFFER.get();
+        if (buffer.busy) {
+            // toString() of an argument is logging a message of its own
+            return formatInto(new StringBuilder(128), pattern, args);
+        }
+        buffer.busy = true;
+        try {
+            StringBuilder out = buffer.builder;
+            out.setLength(0);
+            return formatInto(out, pattern, args);
+        }
+        finally {
+            buffer.busy = false;
+        }
+    }
+
+    private static String formatInto(StringBuilder out, String pattern, Object[] args) {
+        int start = 0;
+        int argIndex = 0;
+        while (argIndex < args.length) {
+            int placeholder = pattern.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            out.append(pattern, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        out.append(pattern, start, pattern.length());
+        return out.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Sends the records as lines over a TCP connection, e.g. to a log collector (or just "nc -lk 5140" while trying it out).
+ * The connection is opened with the first batch and opened again with the next batch if it breaks.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class NetworkSink implements Sink {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private Socket socket;
+    private OutputStream out;
+
+    /**
+     * @param host Host of the collector.
+     * @param port Port of the collector.
+     */
+    public NetworkSink(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void write(List<LogEntry> entries) throws IOException {
+        try {
+            if (socket == null) {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            }
+            for (LogEntry entry : entries) {
+                out.write(entry.getBytes());
+                out.write('\n');
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            Socket current = socket;
+            socket = null;
+            out = null;
+            current.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "network " + host + ":" + port;
+    }
+}
@@ -0,0 +1,19 @@
+package logger;
+
+/**
+ * Decides what the asynchronous logger does when its ring buffer is full, or what a sink does
+ * when its queue is full (the "buffer" below).
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public enum OverflowPolicy {
+    /**The logging thread waits until the writer thread frees up a slot. No messages are lost.*/
+    BLOCK,
+    /**The message is dropped and counted (see Logger.getDroppedCount()). Logging threads never wait.*/
+    DROP,
+    /**DEBUG messages are dropped (and counted) once the buffer is three quarters full, so that the remaining
+     * space is kept for the more important messages. In the ring buffer other messages wait for a free slot
+     * as with BLOCK, a sink never waits and drops them too once its queue is full.*/
+    DROP_DEBUG
+}
@@ -0,0 +1,60 @@
+package logger;
+
+import java.util.Arrays;
+
+/**
+ * A chunk of records written by a single thread, in the order they were logged.
+ * The message of record i is text[start(i), end(i)), unless the record was already encoded
+ * (structured records, see LogEvent), then its bytes are in encoded[i] and the message is empty.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class RecordChunk {
+    static final int CAPACITY = 128;
+
+    final long[] times = new long[CAPACITY];
+    final Level[] levels = new Level[CAPACITY];
+    final int[] ends = new int[CAPACITY];
+    final byte[][] encoded = new byte[CAPACITY][];
+    final StringBuilder text = new StringBuilder(CAPACITY * 64);
+    int size;
+
+    /**
+     * @param time Epoch nanos of the record (see LogClock).
+     * @return True if the chunk is full after adding this record.
+     */
+    boolean add(long time, Level level, String message) {
+        text.append(message);
+        return add(time, level, (byte[]) null);
+    }
+
+    /**
+     * @param time Epoch nanos of the record (see LogClock).
+     * @param bytes The encoded record.
+     * @return True if the chunk is full after adding this record.
+     */
+    boolean add(long time, Level level, byte[] bytes) {
+        times[size] = time;
+        levels[size] = level;
+        encoded[size] = bytes;
+        ends[size] = text.length();
+        size++;
+        return size == CAPACITY;
+    }
+
+    int start(int index) {
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        Arrays.fill(levels, 0, size, null);
+        Arrays.fill(encoded, 0, size, null);
+        text.setLength(0);
+        size = 0;
+    }
+}
@@ -0,0 +1,112 @@
+package logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer with many producers and a single consumer.
+ * Every slot carries a sequence number that tells whether the slot is free for the producer
+ * at a given position or already published for the consumer, so producers only ever compete
+ * on a single CAS of the tail position.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class RingBuffer {
+    private final LogRecord[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity Requested capacity, rounded up to the next power of two.
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        slots = new LogRecord[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new LogRecord();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Try to publish a record, either the message or the already encoded record.
+     *
+     * @return True if the record was published, false if the buffer is full.
+     */
+    boolean offer(long time, Level level, String message, byte[] encoded) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index].set(time, level, message, encoded);
+                    sequences.set(index, pos + 1); // publish
+                    return true;
+                }
+                pos = tail.get();
+            }
+            else if (diff < 0) {
+                return false; // the consumer has not released this slot yet
+            }
+            else {
+                pos = tail.get(); // another producer took this position
+            }
+        }
+    }
+
+    /**
+     * Consumer only. The returned record stays valid until release() is called.
+     *
+     * @return Next published record, or null if there is none.
+     */
+    LogRecord peek() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        return slots[index];
+    }
+
+    /**
+     * Consumer only. Hands the slot returned by peek() back to the producers.
+     */
+    void release() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        slots[index].clear();
+        sequences.set(index, pos + slots.length);
+        head.lazySet(pos + 1);
+    }
+
+    /**
+     * @return Number of positions claimed by the producers so far.
+     */
+    long claimed() {
+        return tail.get();
+    }
+
+    /**
+     * @return Number of records consumed so far.
+     */
+    long consumed() {
+        return head.get();
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,52 @@
+package logger;
+
+/**
+ * Decides when the current log file is closed and a new one is started. Closed files are
+ * compressed with gzip in the background and only the newest ones are kept.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public final class RollingPolicy {
+    private static final RollingPolicy NONE = new RollingPolicy(0, 0, 0);
+
+    private final long maxBytes;
+    private final long maxMillis;
+    private final int retention;
+
+    /**
+     * @param maxBytes Start a new file once the current one reaches this size. 0 for no size limit.
+     * @param maxMillis Start a new file once the current one is this old. 0 for no time limit.
+     * @param retention Number of closed (compressed) files to keep, older ones are deleted. 0 to keep all of them.
+     */
+    public RollingPolicy(long maxBytes, long maxMillis, int retention) {
+        if (maxBytes < 0 || maxMillis < 0 || retention < 0) {
+            throw new IllegalArgumentException("Invalid rolling policy: " + maxBytes + ", " + maxMillis + ", " + retention);
+        }
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+        this.retention = retention;
+    }
+
+    /**
+     * Keep writing into the same file for the whole run (default).
+     *
+     * @return The policy.
+     */
+    public static RollingPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * @param bytes Size of the current file.
+     * @param age Time since the current file was opened.
+     * @return True if a new file should be started before writing more.
+     */
+    boolean shouldRoll(long bytes, long age) {
+        return (maxBytes > 0 && bytes >= maxBytes) || (maxMillis > 0 && age >= maxMillis);
+    }
+
+    int getRetention() {
+        return retention;
+    }
+}
@@ -0,0 +1,31 @@
+package logger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An output of the logger (console, file, ...). Every sink added to the Logger gets its own queue and
+ * writer thread, so a slow sink never holds back the others. write() and close() are only ever called
+ * from that thread, so implementations do not need to be thread-safe.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public interface Sink {
+
+    /**
+     * Write a batch of records, in the order they were logged.
+     *
+     * @param entries Records to write. The list is reused after this call returns.
+     * @throws IOException If the records could not be written. They are not retried.
+     */
+    void write(List<LogEntry> entries) throws IOException;
+
+    /**
+     * Release the resources of the sink. Called once, after the last write.
+     *
+     * @throws IOException If the sink could not be closed properly.
+     */
+    default void close() throws IOException {
+    }
+}
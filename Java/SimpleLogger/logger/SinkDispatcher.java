@@ -0,0 +1,73 @@
+package logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans the records out to the queues of all the registered sinks.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class SinkDispatcher {
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final List<SinkWorker> workers = new CopyOnWriteArrayList<>();
+    private final LoggerMetrics metrics;
+
+    SinkDispatcher(LoggerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void add(Sink sink, Level minimumLevel, int batchSize, OverflowPolicy policy, int queueCapacity) {
+        workers.add(new SinkWorker(sink, minimumLevel, batchSize, policy, queueCapacity, metrics));
+    }
+
+    boolean isEmpty() {
+        return workers.isEmpty();
+    }
+
+    void dispatch(List<LogEntry> entries) {
+        for (SinkWorker worker : workers) {
+            for (LogEntry entry : entries) {
+                worker.offer(entry);
+            }
+        }
+    }
+
+    /**
+     * Wait until every sink has written the records dispatched to it so far.
+     */
+    void awaitWritten() {
+        for (SinkWorker worker : workers) {
+            worker.awaitWritten();
+        }
+    }
+
+    /**
+     * @return Number of records waiting in the queues of all the sinks.
+     */
+    long getQueueDepth() {
+        long depth = 0;
+        for (SinkWorker worker : workers) {
+            depth += worker.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Write out everything queued, close all the sinks and remove them. Sinks that cannot write out their
+     * records within 10 seconds (all together) drop the rest of them.
+     */
+    void stop() {
+        for (SinkWorker worker : workers) {
+            worker.requestStop();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT_MILLIS);
+        for (SinkWorker worker : workers) {
+            worker.awaitStop(deadline);
+        }
+        workers.clear();
+    }
+}
@@ -0,0 +1,207 @@
+package logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The queue and writer thread of a single sink. What happens when the sink cannot keep up and its
+ * queue fills up is decided by the overflow policy of the sink: BLOCK waits for room (and so holds back
+ * the other sinks too), DROP drops the new records for this sink only (they are counted), and DROP_DEBUG
+ * drops DEBUG records once the queue is three quarters full and the others once it is full. Only BLOCK
+ * ever makes the caller wait.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class SinkWorker implements Runnable {
+    private static final LogEntry STOP = new LogEntry(0, Level.DEBUG, new byte[0]);
+
+    private final Sink sink;
+    private final Level minimumLevel;
+    private final int batchSize;
+    private final OverflowPolicy policy;
+    private final int debugLimit;
+    private final BlockingQueue<LogEntry> queue;
+    private final LoggerMetrics metrics;
+    private final Thread thread;
+    private final AtomicLong queued = new AtomicLong();
+    private long done; // records written or dropped by the thread, guarded by this
+    private boolean failing;
+
+    SinkWorker(Sink sink, Level minimumLevel, int batchSize, OverflowPolicy policy, int queueCapacity,
+               LoggerMetrics metrics) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.sink = sink;
+        this.minimumLevel = minimumLevel;
+        this.batchSize = batchSize;
+        this.policy = policy;
+        this.metrics = metrics;
+        debugLimit = queueCapacity - queueCapacity / 4;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        thread = new Thread(this, "logger-sink-" + sink);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue the record if its level passes the filter of this sink, according to the overflow policy.
+     */
+    void offer(LogEntry entry) {
+        Level level = entry.getLevel();
+        if (!level.isAtLeast(minimumLevel)) {
+            return;
+        }
+        if (policy == OverflowPolicy.DROP_DEBUG && level == Level.DEBUG && queue.size() >= debugLimit) {
+            metrics.dropped(1);
+            return;
+        }
+        if (queue.offer(entry)) {
+            queued.incrementAndGet();
+            return;
+        }
+        if (policy != OverflowPolicy.BLOCK || Thread.currentThread() == thread) {
+            metrics.dropped(1);
+            return;
+        }
+        try {
+            while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive()) {
+                    metrics.dropped(1);
+                    return;
+                }
+            }
+            queued.incrementAndGet();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.dropped(1);
+        }
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Wait until the sink has written (or dropped) every record queued before this call.
+     * Returns right away when called from the thread of the sink itself, or once the thread has stopped.
+     */
+    void awaitWritten() {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        long target = queued.get();
+        synchronized (this) {
+            try {
+                while (done < target && thread.isAlive()) {
+                    wait(100);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Ask the thread to write out the queued records and then close the sink.
+     * Records that do not fit into the queue any more are dropped.
+     */
+    void requestStop() {
+        while (!queue.offer(STOP)) {
+            LogEntry discarded = queue.poll();
+            if (discarded != null && discarded != STOP) {
+                metrics.dropped(1);
+            }
+        }
+    }
+
+    /**
+     * Wait for the thread to finish after requestStop(). If the sink is too slow to write the queued records
+     * before the deadline, the rest of them are dropped.
+     *
+     * @param deadline Deadline in System.nanoTime().
+     */
+    void awaitStop(long deadline) {
+        try {
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            thread.join(Math.max(1, millis));
+            if (thread.isAlive()) {
+                int remaining = queue.size();
+                queue.clear();
+                metrics.dropped(remaining);
+                queue.offer(STOP);
+                thread.interrupt();
+                System.err.println("The " + sink + " sink did not finish in time, " + remaining + " records dropped.");
+                thread.join(1000);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                metrics.queueDepth(batch.size() + queue.size());
+            }
+            catch (InterruptedException e) {
+                continue; // only stop() ends the thread, so that no records are lost
+            }
+            if (batch.get(batch.size() - 1) == STOP) {
+                // nothing is queued after STOP
+                batch.remove(batch.size() - 1);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                synchronized (this) {
+                    done += batch.size();
+                    notifyAll();
+                }
+                batch.clear();
+            }
+        }
+        try {
+            sink.close();
+        }
+        catch (IOException e) {
+            System.err.println("Could not close the " + sink + " sink. Error message: " + e.getMessage());
+        }
+    }
+
+    private void write(List<LogEntry> batch) {
+        long start = System.nanoTime();
+        try {
+            sink.write(batch);
+            failing = false;
+        }
+        catch (IOException | RuntimeException e) {
+            metrics.dropped(batch.size());
+            if (!failing) {
+                // report once per failure streak, logging it could fail again in the same sink
+                System.err.println("Could not write to the " + sink + " sink. Error message: " + e.getMessage());
+                failing = true;
+            }
+            return;
+        }
+        long bytes = 0;
+        for (LogEntry entry : batch) {
+            bytes += entry.getBytes().length + 1;
+        }
+        metrics.flushed(bytes, System.nanoTime() - start);
+    }
+}
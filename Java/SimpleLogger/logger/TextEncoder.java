@@ -0,0 +1,66 @@
+package logger;
+
+/**
+ * The usual text format: "yyyy/MM/dd HH:mm:ss [LEVEL] message key=value key=value".
+ * Values containing spaces, quotes or '=' are quoted (logfmt style), everything else is written as it is.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class TextEncoder extends LogEncoder {
+
+    @Override
+    void begin(ByteBuilder out, long time, Level level) {
+        TimestampFormatter.format(time, out);
+        out.appendAscii(" [").appendAscii(level.name()).appendAscii("] ");
+    }
+
+    @Override
+    void message(ByteBuilder out, CharSequence text, int start, int end) {
+        out.appendUtf8(text, start, end);
+    }
+
+    @Override
+    void end(ByteBuilder out) {
+        // nothing after the last field
+    }
+
+    @Override
+    void key(ByteBuilder out, String key) {
+        out.append((byte) ' ').appendUtf8(key, 0, key.length()).append((byte) '=');
+    }
+
+    @Override
+    void value(ByteBuilder out, CharSequence value) {
+        int length = value.length();
+        if (length > 0 && !needsQuotes(value)) {
+            out.appendUtf8(value, 0, length);
+            return;
+        }
+        out.append((byte) '"');
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.appendUtf8(value, run, i).append((byte) '\\').append((byte) c);
+                run = i + 1;
+            }
+        }
+        out.appendUtf8(value, run, length).append((byte) '"');
+    }
+
+    @Override
+    void value(ByteBuilder out, double value) {
+        out.appendDouble(value);
+    }
+
+    private static boolean needsQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ' || c == '"' || c == '=') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+package logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records of a single logging thread. Only the owner adds records and only the flushing thread
+ * takes them, so the lock is practically never contended. Records are kept in chunks and whole
+ * chunks are handed over, which means records of different threads never end up interleaved and
+ * the records of one thread always stay in order.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+final class ThreadBuffer {
+    private final Thread owner = Thread.currentThread();
+    private final List<RecordChunk> full = new ArrayList<>();
+    private RecordChunk current = Logger.newChunk();
+
+    synchronized void add(long time, Level level, String message) {
+        if (current.add(time, level, message)) {
+            full.add(current);
+            current = Logger.newChunk();
+        }
+    }
+
+    synchronized void add(long time, Level level, byte[] encoded) {
+        if (current.add(time, level, encoded)) {
+            full.add(current);
+            current = Logger.newChunk();
+        }
+    }
+
+    /**
+     * Hand over all the records added so far.
+     *
+     * @param out Where to add the chunks, oldest first.
+     */
+    synchronized void drainTo(List<RecordChunk> out) {
+        out.addAll(full);
+        full.clear();
+        if (!current.isEmpty()) {
+            out.add(current);
+            current = Logger.newChunk();
+        }
+    }
+
+    /**
+     * @return True if the owner thread has finished, so no more records can be added.
+     */
+    boolean isOrphaned() {
+        return !owner.isAlive();
+    }
+}
@@ -0,0 +1,108 @@
+package logger;
+
+import java.util.TimeZone;
+
+/**
+ * Formats timestamps as "yyyy/MM/dd HH:mm:ss" in the default time zone, without allocating anything per call.
+ * Every thread keeps the characters of the last formatted second. Within the same second they are appended
+ * as they are, within the same minute only the two digits of the seconds are rewritten, and only when
+ * the minute changes the whole date is computed again.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public final class TimestampFormatter {
+    /** Number of characters appended by format(). */
+    public static final int LENGTH = 19;
+
+    private static final ThreadLocal<TimestampFormatter> CACHE = ThreadLocal.withInitial(TimestampFormatter::new);
+
+    private final TimeZone zone = TimeZone.getDefault();
+    private final char[] chars = "0000/00/00 00:00:00".toCharArray();
+    private long cachedSecond = Long.MIN_VALUE;
+    private long cachedMinute = Long.MIN_VALUE;
+
+    private TimestampFormatter() {
+    }
+
+    /**
+     * Append the formatted timestamp. Safe to call from any thread.
+     *
+     * @param millis Time in milliseconds since the epoch.
+     * @param out Where to append the timestamp.
+     */
+    public static void format(long millis, StringBuilder out) {
+        CACHE.get().append(millis, out);
+    }
+
+    /**
+     * Append the formatted timestamp as ASCII bytes. Safe to call from any thread.
+     *
+     * @param millis Time in milliseconds since the epoch.
+     * @param out Where to append the timestamp.
+     */
+    static void format(long millis, ByteBuilder out) {
+        TimestampFormatter formatter = CACHE.get();
+        formatter.refresh(millis);
+        for (int i = 0; i < LENGTH; i++) {
+            out.append((byte) formatter.chars[i]);
+        }
+    }
+
+    private void append(long millis, StringBuilder out) {
+        refresh(millis);
+        out.append(chars, 0, LENGTH);
+    }
+
+    private void refresh(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != cachedSecond) {
+            update(millis, second);
+        }
+    }
+
+    private void update(long millis, long second) {
+        // time zone offsets only change on whole minutes, so they are handled by the full update
+        long local = second + zone.getOffset(millis) / 1000;
+        long minute = Math.floorDiv(local, 60);
+        int seconds = (int) (local - minute * 60);
+        if (minute == cachedMinute) {
+            writeTwoDigits(17, seconds);
+        }
+        else {
+            long days = Math.floorDiv(minute, 1440);
+            int minuteOfDay = (int) (minute - days * 1440);
+            writeDate(days);
+            writeTwoDigits(11, minuteOfDay / 60);
+            writeTwoDigits(14, minuteOfDay % 60);
+            writeTwoDigits(17, seconds);
+            cachedMinute = minute;
+        }
+        cachedSecond = second;
+    }
+
+    /**
+     * Converts days since the epoch to a civil date (proleptic Gregorian calendar).
+     */
+    private void writeDate(long days) {
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeTwoDigits(0, year / 100);
+        writeTwoDigits(2, year % 100);
+        writeTwoDigits(5, month);
+        writeTwoDigits(8, day);
+    }
+
+    private void writeTwoDigits(int index, int value) {
+        chars[index] = (char) ('0' + value / 10);
+        chars[index + 1] = (char) ('0' + value % 10);
+    }
+}
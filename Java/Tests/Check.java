@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A minimal test harness for the snippets in this folder (no dependencies, like the benchmark harness).
+ * Every suite runs its checks against the real classes and local stub servers; a failed check is reported
+ * and the run ends with exit code 1.
+ * <p>
+ * Usage: java Check [suite...]
+ * <br>
+ * Suites: logger, http (all of them by default).
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class Check {
+
+    /**
+     * An operation that is expected to fail.
+     */
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * A group of related checks.
+     */
+    public interface Suite {
+        void run(Check check) throws Exception;
+    }
+
+    private static final Map<String, Suite> SUITES = new LinkedHashMap<>();
+
+    static {
+        SUITES.put("logger", new LoggerTest());
+        SUITES.put("http", new HttpTest());
+    }
+
+    private final List<String> failures = new ArrayList<>();
+    private int passed;
+
+    public static void main(String[] args) {
+        List<String> selected = new ArrayList<>();
+        for (String arg : args) {
+            if (!SUITES.containsKey(arg)) {
+                System.err.println("Unknown suite: " + arg + ", available: " + SUITES.keySet());
+                System.exit(1);
+            }
+            selected.add(arg);
+        }
+        if (selected.isEmpty()) {
+            selected.addAll(SUITES.keySet());
+        }
+
+        Check check = new Check();
+        for (String name : selected) {
+            System.out.println("== " + name);
+            try {
+                SUITES.get(name).run(check);
+            }
+            catch (Exception e) {
+                check.fail(name, "suite failed with " + e);
+                e.printStackTrace();
+            }
+        }
+        System.out.println(check.passed + " passed, " + check.failures.size() + " failed");
+        for (String failure : check.failures) {
+            System.out.println("  " + failure);
+        }
+        // the snippets may leave non-daemon threads behind (e.g. the HTTP client)
+        System.exit(check.failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * @param name What is checked.
+     * @param condition True if the check passed.
+     */
+    public void that(String name, boolean condition) {
+        if (condition) {
+            pass(name);
+        }
+        else {
+            fail(name, "condition is false");
+        }
+    }
+
+    /**
+     * @param name What is checked.
+     * @param expected The expected value.
+     * @param actual The actual value.
+     */
+    public void equal(String name, Object expected, Object actual) {
+        if (Objects.equals(expected, actual)) {
+            pass(name);
+        }
+        else {
+            fail(name, "expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    /**
+     * Check that the operation throws the expected exception (or a subclass of it).
+     *
+     * @param name What is checked.
+     * @param expected The expected type of the exception.
+     * @param operation The operation.
+     * @return The exception thrown, or null if there was none or it was of a different type.
+     */
+    public <T extends Throwable> T fails(String name, Class<T> expected, Operation operation) {
+        try {
+            operation.run();
+        }
+        catch (Throwable e) {
+            if (expected.isInstance(e)) {
+                pass(name);
+                return expected.cast(e);
+            }
+            fail(name, "expected " + expected.getSimpleName() + " but got " + e);
+            return null;
+        }
+        fail(name, "expected " + expected.getSimpleName() + " but nothing was thrown");
+        return null;
+    }
+
+    private void pass(String name) {
+        passed++;
+        System.out.println("  ok   " + name);
+    }
+
+    private void fail(String name, String detail) {
+        failures.add(name + ": " + detail);
+        System.out.println("  FAIL " + name + ": " + detail);
+    }
+}
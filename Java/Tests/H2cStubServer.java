@@ -0,0 +1,480 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small local server that speaks both HTTP/1.1 and cleartext HTTP/2 (h2c), for comparing the two with
+ * HttpRequest.setHttp2() without depending on the network. HTTP/2 is used if the client asks for it with
+ * "Upgrade: h2c" or starts the connection with the HTTP/2 preface (prior knowledge), otherwise the connection
+ * stays HTTP/1.1 with keep-alive.
+ * <p>
+ * Every request, whatever its method and path, is answered with the same body of bodySize bytes after delayMillis,
+ * to simulate a slow remote server. Over HTTP/2 the responses of a connection are sent as they become ready,
+ * in any order, so many requests can wait on the same connection at once. Only what the JDK HTTP clients need
+ * is implemented: the request headers are not decoded, and the flow control only covers the connection window.
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class H2cStubServer {
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int SETTINGS = 0x4;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int END_STREAM = 0x1;
+    private static final int ACK = 0x1;
+    private static final int END_HEADERS = 0x4;
+
+    private static final int MAX_FRAME_SIZE = 16 * 1024;
+    private static final int INITIAL_WINDOW = 65_535;
+
+    private final ServerSocket serverSocket;
+    private final ScheduledExecutorService scheduler;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final int delayMillis;
+    private final byte[] body;
+    private final byte[] http1Head;
+    private final byte[] http2Headers;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger http2Connections = new AtomicInteger();
+    private final AtomicLong http1Requests = new AtomicLong();
+    private final AtomicLong http2Streams = new AtomicLong();
+    private volatile boolean running;
+
+    /**
+     * Create the server on a free local port. Call start() to start serving.
+     *
+     * @param delayMillis Time each response waits before it is sent.
+     * @param bodySize Size of the body of each response, at most 64 KB (the initial HTTP/2 stream window).
+     */
+    public H2cStubServer(int delayMillis, int bodySize) throws IOException {
+        if (bodySize < 0 || bodySize > INITIAL_WINDOW) {
+            throw new IllegalArgumentException("The body must be between 0 and " + INITIAL_WINDOW + " bytes.");
+        }
+        this.delayMillis = delayMillis;
+        body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        http1Head = ("HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Length: " + bodySize
+                + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        http2Headers = responseHeaders(bodySize);
+        serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "h2c-stub-server-responses");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        running = true;
+        Thread acceptor = new Thread(this::accept, "h2c-stub-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            // closing anyway
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // closing anyway
+            }
+        }
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @param path Any path, all of them get the same response.
+     * @return Full URL of the path on this server.
+     */
+    public String getUrl(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    /**
+     * @return Number of connections accepted.
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * @return Number of connections that were switched to HTTP/2.
+     */
+    public int getHttp2ConnectionCount() {
+        return http2Connections.get();
+    }
+
+    /**
+     * @return Number of requests received over HTTP/1.1.
+     */
+    public long getHttp1RequestCount() {
+        return http1Requests.get();
+    }
+
+    /**
+     * @return Number of requests (streams) received over HTTP/2.
+     */
+    public long getHttp2StreamCount() {
+        return http2Streams.get();
+    }
+
+    @Override
+    public String toString() {
+        return "H2cStubServer[connections=" + getConnectionCount() + ", http2Connections=" + getHttp2ConnectionCount()
+                + ", http1Requests=" + getHttp1RequestCount() + ", http2Streams=" + getHttp2StreamCount() + "]";
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                sockets.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "h2c-stub-server-connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch (IOException e) {
+                // closed by stop()
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream(), MAX_FRAME_SIZE);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), MAX_FRAME_SIZE);
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                if (requestLine.equals("PRI * HTTP/2.0")) {
+                    // prior knowledge: the rest of the preface is "\r\nSM\r\n\r\n"
+                    if (!"".equals(readLine(in)) || !"SM".equals(readLine(in)) || !"".equals(readLine(in))) {
+                        return;
+                    }
+                    new Http2Connection(in, out).serve(false);
+                    return;
+                }
+                String upgrade = null;
+                String connection = null;
+                long contentLength = 0;
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    if (colon <= 0) {
+                        continue;
+                    }
+                    String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                    String value = line.substring(colon + 1).trim();
+                    switch (name) {
+                        case "upgrade": upgrade = value; break;
+                        case "connection": connection = value; break;
+                        case "content-length": contentLength = Long.parseLong(value); break;
+                        default: break;
+                    }
+                }
+                if (in.skip(contentLength) < contentLength) {
+                    in.readNBytes((int) contentLength); // skip() may stop early
+                }
+                if (upgrade != null && upgrade.equalsIgnoreCase("h2c")) {
+                    out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                            .getBytes(StandardCharsets.US_ASCII));
+                    new Http2Connection(in, out).serve(true);
+                    return;
+                }
+                http1Requests.incrementAndGet();
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+                out.write(http1Head);
+                out.write(body);
+                out.flush();
+                if (connection != null && connection.equalsIgnoreCase("close")) {
+                    return;
+                }
+            }
+        }
+        catch (IOException e) {
+            // the client closed the connection
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            sockets.remove(socket);
+        }
+    }
+
+    /**
+     * A connection after it switched to HTTP/2. Frames are read by the connection thread and the
+     * responses are written by the scheduler threads, each frame as a whole.
+     */
+    private final class Http2Connection {
+        private final InputStream in;
+        private final OutputStream out;
+        private final Object windowLock = new Object();
+        private long sendWindow = INITIAL_WINDOW;
+        private volatile boolean closed;
+
+        Http2Connection(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        /**
+         * @param upgraded True if the connection was upgraded from HTTP/1.1, the upgrade request is then
+         *                 stream 1 and the client preface still has to be read.
+         */
+        void serve(boolean upgraded) throws IOException {
+            http2Connections.incrementAndGet();
+            try {
+                writeFrame(SETTINGS, 0, 0, EMPTY, 0, 0, true);
+                if (upgraded) {
+                    byte[] preface = in.readNBytes(PREFACE.length);
+                    if (!Arrays.equals(preface, PREFACE)) {
+                        return;
+                    }
+                    respondLater(1);
+                }
+                readFrames();
+            }
+            finally {
+                closed = true;
+                synchronized (windowLock) {
+                    windowLock.notifyAll();
+                }
+            }
+        }
+
+        private void readFrames() throws IOException {
+            byte[] header = new byte[9];
+            byte[] payload = new byte[MAX_FRAME_SIZE];
+            int headersWithoutEnd = -1; // stream whose request ends with its header block, which continues
+            while (true) {
+                if (in.readNBytes(header, 0, 9) < 9) {
+                    return;
+                }
+                int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+                int type = header[3] & 0xFF;
+                int flags = header[4] & 0xFF;
+                int stream = (((header[5] & 0x7F) << 24) | ((header[6] & 0xFF) << 16) | ((header[7] & 0xFF) << 8)
+                        | (header[8] & 0xFF));
+                if (length > payload.length) {
+                    payload = new byte[length];
+                }
+                if (in.readNBytes(payload, 0, length) < length) {
+                    throw new EOFException("Connection closed in the middle of a frame.");
+                }
+                switch (type) {
+                    case HEADERS:
+                        if ((flags & END_STREAM) != 0) {
+                            if ((flags & END_HEADERS) != 0) {
+                                respondLater(stream);
+                            }
+                            else {
+                                headersWithoutEnd = stream;
+                            }
+                        }
+                        break;
+                    case CONTINUATION:
+                        if ((flags & END_HEADERS) != 0 && stream == headersWithoutEnd) {
+                            headersWithoutEnd = -1;
+                            respondLater(stream);
+                        }
+                        break;
+                    case DATA:
+                        if (length > 0) {
+                            // give the client its window back, the request body is not kept
+                            writeFrame(WINDOW_UPDATE, 0, 0, windowIncrement(length), 0, 4, false);
+                            if ((flags & END_STREAM) == 0) {
+                                writeFrame(WINDOW_UPDATE, 0, stream, windowIncrement(length), 0, 4, false);
+                            }
+                            flush();
+                        }
+                        if ((flags & END_STREAM) != 0) {
+                            respondLater(stream);
+                        }
+                        break;
+                    case SETTINGS:
+                        if ((flags & ACK) == 0) {
+                            writeFrame(SETTINGS, ACK, 0, EMPTY, 0, 0, true);
+                        }
+                        break;
+                    case PING:
+                        if ((flags & ACK) == 0) {
+                            writeFrame(PING, ACK, 0, payload, 0, length, true);
+                        }
+                        break;
+                    case WINDOW_UPDATE:
+                        if (stream == 0 && length == 4) {
+                            synchronized (windowLock) {
+                                sendWindow += ((payload[0] & 0x7F) << 24) | ((payload[1] & 0xFF) << 16)
+                                        | ((payload[2] & 0xFF) << 8) | (payload[3] & 0xFF);
+                                windowLock.notifyAll();
+                            }
+                        }
+                        break;
+                    case GOAWAY:
+                        return;
+                    default:
+                        break; // PRIORITY, RST_STREAM and unknown frames
+                }
+            }
+        }
+
+        private void respondLater(int stream) {
+            http2Streams.incrementAndGet();
+            if (delayMillis > 0) {
+                scheduler.schedule(() -> respond(stream), delayMillis, TimeUnit.MILLISECONDS);
+            }
+            else {
+                respond(stream);
+            }
+        }
+
+        private void respond(int stream) {
+            try {
+                writeFrame(HEADERS, END_HEADERS | (body.length == 0 ? END_STREAM : 0), stream, http2Headers, 0,
+                        http2Headers.length, body.length == 0);
+                for (int offset = 0; offset < body.length; ) {
+                    int length = Math.min(MAX_FRAME_SIZE, body.length - offset);
+                    if (!takeWindow(length)) {
+                        return;
+                    }
+                    boolean last = offset + length == body.length;
+                    writeFrame(DATA, last ? END_STREAM : 0, stream, body, offset, length, last);
+                    offset += length;
+                }
+            }
+            catch (IOException e) {
+                // the client closed the connection
+            }
+        }
+
+        /**
+         * Wait until the client allows length more bytes on this connection.
+         *
+         * @return False if the connection closed first.
+         */
+        private boolean takeWindow(int length) {
+            synchronized (windowLock) {
+                while (sendWindow < length) {
+                    if (closed) {
+                        return false;
+                    }
+                    try {
+                        windowLock.wait(100);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                sendWindow -= length;
+                return true;
+            }
+        }
+
+        private void writeFrame(int type, int flags, int stream, byte[] payload, int offset, int length, boolean flush)
+                throws IOException {
+            synchronized (out) {
+                out.write(length >>> 16);
+                out.write(length >>> 8);
+                out.write(length);
+                out.write(type);
+                out.write(flags);
+                out.write(stream >>> 24);
+                out.write(stream >>> 16);
+                out.write(stream >>> 8);
+                out.write(stream);
+                out.write(payload, offset, length);
+                if (flush) {
+                    out.flush();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    private static byte[] windowIncrement(int increment) {
+        return new byte[] {(byte) (increment >>> 24), (byte) (increment >>> 16), (byte) (increment >>> 8), (byte) increment};
+    }
+
+    /**
+     * HPACK header block of the responses: ":status: 200" from the static table, then content-type and
+     * content-length as literals that are not indexed, so no dynamic table is needed.
+     */
+    private static byte[] responseHeaders(int bodySize) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        block.write(0x88); // indexed, static table entry 8 is ":status: 200"
+        literal(block, 31, "text/plain; charset=UTF-8"); // static table entry 31 is "content-type"
+        literal(block, 28, Integer.toString(bodySize)); // static table entry 28 is "content-length"
+        return block.toByteArray();
+    }
+
+    /**
+     * Literal header field without indexing, with the name from the static table and a short value.
+     */
+    private static void literal(ByteArrayOutputStream block, int nameIndex, String value) {
+        // the index has a 4 bit prefix, so it continues in the next byte
+        block.write(0x0F);
+        block.write(nameIndex - 15);
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        block.write(bytes.length); // not Huffman encoded, shorter than 127 bytes
+        block.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return The next line of the HTTP/1.1 request head without the line break, or null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+}
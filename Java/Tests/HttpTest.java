@@ -0,0 +1,451 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks of HttpRequest and HttpRequestClient against a local StubServer (and a raw socket where the stub
+ * cannot misbehave enough): compressed responses, bodiless responses that keep their Content-Encoding,
+ * retries, the circuit breaker, the total and the non-blocking timeouts, which requests are coalesced and
+ * the exceptions they get, writing a response to a file, and the resending and parsing of the pooled client.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class HttpTest implements Check.Suite {
+    private static final byte[] TEXT = "{\"id\":12345,\"name\":\"Luka\"},\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    public void run(Check check) throws Exception {
+        contentEncoding(check);
+        StubServer server = new StubServer();
+        server.start();
+        try {
+            compressedResponses(check, server);
+            retries(check, server);
+            circuitBreaker(check, server);
+            totalTimeout(check, server);
+            asyncTimeout(check, server);
+            fanOutNotShared(check, server);
+            cancelledReported(check, server);
+        }
+        finally {
+            HttpRequest.setRetryPolicy(null);
+            HttpRequest.setCircuitBreaker(null);
+            HttpRequest.setTotalTimeout(0);
+            HttpRequest.setAsyncTimeout(30_000);
+            server.stop();
+        }
+        coalescedFailure(check);
+        responseToFile(check);
+        clientParsing(check);
+        clientResending(check);
+    }
+
+    /**
+     * gzip, zlib deflate and raw deflate bodies decode to the original, an empty body to an empty one.
+     */
+    private static void contentEncoding(Check check) throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(TEXT);
+        }
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(zlib)) {
+            out.write(TEXT);
+        }
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(raw, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            out.write(TEXT);
+        }
+        check.that("decode: gzip", decodes(gzip.toByteArray(), "gzip", TEXT));
+        check.that("decode: deflate (zlib)", decodes(zlib.toByteArray(), "deflate", TEXT));
+        check.that("decode: deflate (raw)", decodes(raw.toByteArray(), "deflate", TEXT));
+        check.that("decode: empty gzip body", decodes(new byte[0], "gzip", new byte[0]));
+        check.that("decode: empty deflate body", decodes(new byte[0], "deflate", new byte[0]));
+        check.fails("decode: unsupported encoding", IOException.class,
+                () -> ContentEncoding.decode(new ByteArrayInputStream(TEXT), "br"));
+    }
+
+    private static boolean decodes(byte[] body, String encoding, byte[] expected) throws IOException {
+        try (InputStream in = ContentEncoding.decode(new ByteArrayInputStream(body), encoding)) {
+            return Arrays.equals(expected, in.readAllBytes());
+        }
+    }
+
+    /**
+     * A compressed response is decoded while it is read, and a HEAD request of it (no body, but the same
+     * Content-Encoding) gets an empty response instead of an EOFException.
+     */
+    private static void compressedResponses(Check check, StubServer server) throws IOException {
+        HttpRequest.setResponseCompression(true);
+        int size = 100_000;
+        long sentBefore = server.getBytesSent();
+        int received = HttpRequest.getResponseStream("GET", server.getUrl("/text"), "size=" + size,
+                (in, charset) -> in.readAllBytes().length);
+        check.equal("gzip response: decoded length", size, received);
+        check.that("gzip response: fewer bytes sent than decoded", server.getBytesSent() - sentBefore < size);
+        check.equal("HEAD of a gzip response: empty", "", HttpRequest.getResponse("HEAD", server.getUrl("/text"), ""));
+    }
+
+    /**
+     * A request that keeps failing is sent maxAttempts times and then fails with the last status.
+     */
+    private static void retries(Check check, StubServer server) {
+        HttpRequest.setRetryPolicy(new RetryPolicy(3, 10, 50));
+        long retriesBefore = HttpRequest.getRetryCount();
+        HttpStatusException e = check.fails("retries exhausted: last status thrown", HttpStatusException.class,
+                () -> HttpRequest.getResponse("GET", server.getUrl("/flaky"), "key=retries&failures=5"));
+        check.equal("retries exhausted: status", 503, e == null ? -1 : e.getStatusCode());
+        check.equal("retries exhausted: sent maxAttempts times", 3, server.getRequestCount("retries"));
+        check.equal("retries exhausted: retries counted", 2L, HttpRequest.getRetryCount() - retriesBefore);
+        check.fails("retries: 404 is not retried", FileNotFoundException.class,
+                () -> HttpRequest.getResponse("GET", server.getUrl("/flaky"), "key=missing&failures=5&fault=404"));
+        check.equal("retries: 404 sent once", 1, server.getRequestCount("missing"));
+        HttpRequest.setRetryPolicy(null);
+    }
+
+    /**
+     * The breaker opens after failureThreshold failures, rejects requests while open, lets one trial
+     * request through after openMillis (half open) and closes when it succeeds.
+     */
+    private static void circuitBreaker(Check check, StubServer server) throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(2, 300);
+        HttpRequest.setCircuitBreaker(breaker);
+        String url = server.getUrl("/flaky");
+        for (int i = 0; i < 2; i++) {
+            check.fails("breaker: failure " + (i + 1), HttpStatusException.class,
+                    () -> HttpRequest.getResponse("GET", url, "key=breaker&failures=2"));
+        }
+        check.equal("breaker: open after the threshold", CircuitBreaker.State.OPEN, breaker.getState(url));
+        check.fails("breaker: rejects while open", CircuitOpenException.class,
+                () -> HttpRequest.getResponse("GET", url, "key=breaker&failures=2"));
+        check.equal("breaker: rejected request not sent", 2, server.getRequestCount("breaker"));
+
+        Thread.sleep(350);
+        AtomicReference<String> trial = new AtomicReference<>();
+        Thread trialThread = new Thread(() -> {
+            try {
+                trial.set(HttpRequest.getResponse("GET", server.getUrl("/delay"), "ms=500"));
+            }
+            catch (IOException e) {
+                trial.set(e.toString());
+            }
+        });
+        trialThread.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (breaker.getState(url) != CircuitBreaker.State.HALF_OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        check.equal("breaker: half open during the trial request", CircuitBreaker.State.HALF_OPEN, breaker.getState(url));
+        check.fails("breaker: rejects others during the trial", CircuitOpenException.class,
+                () -> HttpRequest.getResponse("GET", url, "key=breaker&failures=2"));
+        trialThread.join();
+        check.equal("breaker: trial request succeeds", "ok", trial.get());
+        check.equal("breaker: closed after the trial", CircuitBreaker.State.CLOSED, breaker.getState(url));
+        HttpRequest.setCircuitBreaker(null);
+    }
+
+    /**
+     * A server that does not respond fails the request once the total timeout passes.
+     */
+    private static void totalTimeout(Check check, StubServer server) {
+        HttpRequest.setTotalTimeout(300);
+        long start = System.nanoTime();
+        check.fails("total timeout: SocketTimeoutException", SocketTimeoutException.class,
+                () -> HttpRequest.getResponse("GET", server.getUrl("/flaky"), "key=total&fault=hang&ms=3000"));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        check.that("total timeout: fails before the server responds (" + millis + " ms)", millis < 2_000);
+        HttpRequest.setTotalTimeout(0);
+    }
+
+    /**
+     * A non-blocking request to a server that does not respond completes with an HttpTimeoutException.
+     */
+    private static void asyncTimeout(Check check, StubServer server) throws InterruptedException {
+        HttpRequest.setAsyncTimeout(300);
+        CompletableFuture<String> response = HttpRequest.getResponseAsync("GET", server.getUrl("/delay"), "ms=3000");
+        Throwable cause = null;
+        try {
+            response.get();
+        }
+        catch (ExecutionException e) {
+            cause = e.getCause();
+        }
+        check.that("async timeout: HttpTimeoutException (" + cause + ")", cause instanceof HttpTimeoutException);
+        HttpRequest.setAsyncTimeout(30_000);
+    }
+
+    /**
+     * A plain request is not shared with an identical HttpFanOut request in progress, which has its own
+     * deadline and gets aborted when it passes.
+     */
+    private static void fanOutNotShared(Check check, StubServer server) throws Exception {
+        String url = server.getUrl("/delay");
+        List<HttpRequest.Request> requests = List.of(new HttpRequest.Request("GET", url, "ms=1000"));
+        AtomicReference<List<Future<String>>> fanOut = new AtomicReference<>();
+        Thread batch = new Thread(() -> {
+            try {
+                fanOut.set(new HttpFanOut().getAll(requests, 150));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        batch.start();
+        Thread.sleep(50); // the fan-out request is in progress
+        String plain;
+        try {
+            plain = HttpRequest.getResponse("GET", url, "ms=1000");
+        }
+        catch (IOException | RuntimeException e) {
+            plain = e.toString();
+        }
+        batch.join();
+        check.equal("fan-out: plain request not aborted with it", "ok", plain);
+        // cancelled, or failed with the read timeout that ends at the deadline just before that
+        Future<String> own = fanOut.get().get(0);
+        boolean failed;
+        try {
+            own.get();
+            failed = false;
+        }
+        catch (CancellationException | ExecutionException e) {
+            failed = true;
+        }
+        check.that("fan-out: its own request fails at the deadline", failed);
+    }
+
+    /**
+     * A request that is cancelled while it starts (as an aborted HttpFanOut task is) still reaches the listeners.
+     */
+    private static void cancelledReported(Check check, StubServer server) {
+        List<HttpTimings> completed = new CopyOnWriteArrayList<>();
+        HttpRequestListener listener = completed::add;
+        HttpRequest.addListener(listener);
+        try {
+            check.fails("cancelled request: CancellationException", CancellationException.class,
+                    () -> HttpRequest.getResponse("GET", server.getUrl("/bytes"), "size=10", con -> {
+                        throw new CancellationException("Deadline passed before connecting.");
+                    }));
+        }
+        finally {
+            HttpRequest.removeListener(listener);
+        }
+        check.that("cancelled request: reported with its error",
+                completed.size() == 1 && completed.get(0).getError() != null
+                        && completed.get(0).getError().getCause() instanceof CancellationException);
+    }
+
+    /**
+     * A caller that waits for an identical request in progress gets the same exception as its caller.
+     */
+    private static void coalescedFailure(Check check) throws Exception {
+        SingleFlight flight = new SingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        Thread leader = new Thread(() -> {
+            try {
+                flight.execute("key", () -> {
+                    started.countDown();
+                    try {
+                        joined.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new HttpStatusException(503, "http://localhost/", 0);
+                });
+            }
+            catch (IOException e) {
+                // only the follower is checked
+            }
+        });
+        leader.start();
+        started.await();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread follower = new Thread(() -> {
+            try {
+                flight.execute("key", () -> "not called, the request is in progress");
+            }
+            catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        follower.start();
+        while (flight.getSharedCount() == 0) {
+            Thread.sleep(1);
+        }
+        joined.countDown();
+        leader.join();
+        follower.join();
+        check.that("coalesced failure: same exception type (" + failure.get() + ")",
+                failure.get() instanceof HttpStatusException);
+    }
+
+    /**
+     * getResponseToFile() replaces the file only with a complete body; a connection that closes in the middle
+     * of the body leaves the old file and no temporary file behind.
+     */
+    private static void responseToFile(Check check) throws Exception {
+        Path dir = Files.createTempDirectory("http-test");
+        Path file = dir.resolve("body.txt");
+        Files.write(file, "old".getBytes(StandardCharsets.UTF_8));
+        byte[] partial = "HTTP/1.1 200 OK\r\nContent-Length: 1000\r\n\r\nonly part of it"
+                .getBytes(StandardCharsets.ISO_8859_1);
+        try (RawServer server = new RawServer(request -> partial, true)) {
+            check.fails("file: body cut short fails", IOException.class,
+                    () -> HttpRequest.getResponseToFile("GET", server.url, "", file));
+        }
+        try (RawServer server = new RawServer(request -> partial)) { // the rest of the body never comes
+            HttpRequest.setReadTimeout(200);
+            check.fails("file: read timeout in the body fails", SocketTimeoutException.class,
+                    () -> HttpRequest.getResponseToFile("GET", server.url, "", file));
+        }
+        finally {
+            HttpRequest.setReadTimeout(30_000);
+        }
+        check.equal("file: old file kept", "old", Files.readString(file));
+        byte[] complete = "HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nnew".getBytes(StandardCharsets.ISO_8859_1);
+        try (RawServer server = new RawServer(request -> complete)) {
+            check.equal("file: complete body written", 3L, HttpRequest.getResponseToFile("GET", server.url, "", file));
+        }
+        check.equal("file: replaced", "new", Files.readString(file));
+        try (Stream<Path> files = Files.list(dir)) {
+            check.equal("file: no temporary file left", 1L, files.count());
+        }
+        Files.delete(file);
+        Files.delete(dir);
+    }
+
+    /**
+     * Responses with invalid numbers fail with a ProtocolException.
+     */
+    private static void clientParsing(Check check) throws Exception {
+        String[] responses = {
+                "HTTP/1.1 abc OK\r\n\r\n",
+                "HTTP/1.1 200 OK\r\nContent-Length: x\r\n\r\n",
+                "HTTP/1.1 200 OK\r\nContent-Length: -4\r\n\r\n",
+                "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n"
+        };
+        for (String response : responses) {
+            try (RawServer server = new RawServer(request -> response.getBytes(StandardCharsets.ISO_8859_1));
+                 HttpRequestClient client = new HttpRequestClient(1, 10_000)) {
+                check.fails("client: " + response.substring(0, response.indexOf("\r\n\r\n")).replace("\r\n", " | ")
+                        + " -> ProtocolException", ProtocolException.class, () -> client.getResponse("GET", server.url, ""));
+            }
+        }
+    }
+
+    /**
+     * The server closes the kept-alive connection when it gets the second request. The client sends a GET
+     * again over a new connection, but not a POST, which the server might have processed.
+     */
+    private static void clientResending(Check check) throws Exception {
+        for (String method : new String[] {"GET", "POST"}) {
+            AtomicInteger received = new AtomicInteger();
+            byte[] ok = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.ISO_8859_1);
+            try (RawServer server = new RawServer(request -> received.incrementAndGet() == 2 ? null : ok);
+                 HttpRequestClient client = new HttpRequestClient(1, 10_000)) {
+                client.getResponse(method, server.url, "a=1");
+                if (method.equals("GET")) {
+                    check.equal("client: GET sent again after a stale connection", "ok",
+                            client.getResponse(method, server.url, "a=1"));
+                    check.equal("client: second GET received twice", 3, received.get());
+                }
+                else {
+                    check.fails("client: POST not sent again after a stale connection", IOException.class,
+                            () -> client.getResponse(method, server.url, "a=1"));
+                    check.equal("client: second POST received once", 2, received.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers every request read from a connection with whatever the handler returns, or closes the
+     * connection if it returns null (or after each response if asked to). Each read of the socket is taken
+     * as one whole request.
+     */
+    private static final class RawServer implements AutoCloseable {
+        interface Handler {
+            byte[] respond(byte[] request);
+        }
+
+        final String url;
+        private final ServerSocket socket = new ServerSocket(0);
+
+        RawServer(Handler handler) throws IOException {
+            this(handler, false);
+        }
+
+        RawServer(Handler handler, boolean closeAfterResponse) throws IOException {
+            url = "http://127.0.0.1:" + socket.getLocalPort() + "/";
+            Thread acceptor = new Thread(() -> {
+                while (!socket.isClosed()) {
+                    try {
+                        Socket connection = socket.accept();
+                        Thread reader = new Thread(() -> serve(connection, handler, closeAfterResponse));
+                        reader.setDaemon(true);
+                        reader.start();
+                    }
+                    catch (IOException e) {
+                        return; // closed
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private static void serve(Socket connection, Handler handler, boolean closeAfterResponse) {
+            try (Socket s = connection) {
+                byte[] buffer = new byte[8 * 1024];
+                int read;
+                while ((read = s.getInputStream().read(buffer)) > 0) {
+                    byte[] response = handler.respond(Arrays.copyOf(buffer, read));
+                    if (response == null) {
+                        return;
+                    }
+                    s.getOutputStream().write(response);
+                    s.getOutputStream().flush();
+                    if (closeAfterResponse) {
+                        return;
+                    }
+                }
+            }
+            catch (IOException e) {
+                // the client closed the connection
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
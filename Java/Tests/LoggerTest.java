@@ -0,0 +1,187 @@
+import logger.Level;
+import logger.LogEntry;
+import logger.Logger;
+import logger.MemorySink;
+import logger.OverflowPolicy;
+import logger.Sink;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks of the Logger: no records are lost or reordered when many threads log and flush at the same time
+ * (per-thread buffers and the asynchronous ring buffer), flush() returns only once the sinks have written
+ * the records, a stuck sink does not hold back the others, and arguments and field values that log
+ * while a record is built do not corrupt or drop it.
+ *
+ * @author Luka Kralj
+ * @version 1.0
+ */
+public class LoggerTest implements Check.Suite {
+    private static final int THREADS = 8;
+    private static final int RECORDS_PER_THREAD = 20_000;
+
+    @Override
+    public void run(Check check) throws Exception {
+        concurrentLogging(check, false);
+        concurrentLogging(check, true);
+        stuckSink(check);
+        nestedFormatting(check);
+        nestedStructured(check);
+    }
+
+    /**
+     * Every thread logs "t[thread] [sequence]" while another thread keeps flushing. After the last flush()
+     * the sink must have every record exactly once, and the records of each thread in order.
+     */
+    private static void concurrentLogging(Check check, boolean async) throws Exception {
+        String mode = async ? "async" : "sync";
+        MemorySink sink = new MemorySink(THREADS * RECORDS_PER_THREAD + 16);
+        Logger.addSink(sink, Level.DEBUG, Logger.DEFAULT_BATCH_SIZE, OverflowPolicy.BLOCK);
+        if (async) {
+            Logger.startAsyncLogger(false, false, 1024, OverflowPolicy.BLOCK);
+        }
+        else {
+            Logger.startLogger(false, false, false);
+        }
+
+        AtomicBoolean logging = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (logging.get()) {
+                Logger.flush();
+            }
+        });
+        flusher.start();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            String prefix = "t" + t + " ";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                    Logger.log(prefix + i, Level.DEBUG);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        logging.set(false);
+        flusher.join();
+        Logger.flush();
+
+        // checked before stopLogger(), which would write out whatever flush() left behind
+        int[] next = new int[THREADS];
+        int count = 0;
+        boolean ordered = true;
+        for (LogEntry entry : sink.getEntries()) {
+            String text = entry.getText();
+            int start = text.indexOf("] t");
+            if (start < 0) {
+                continue; // "Logger started."
+            }
+            String[] parts = text.substring(start + 3).split(" ");
+            int thread = Integer.parseInt(parts[0]);
+            int sequence = Integer.parseInt(parts[1]);
+            if (sequence != next[thread]) {
+                ordered = false;
+            }
+            next[thread] = sequence + 1;
+            count++;
+        }
+        Logger.stopLogger();
+        check.equal(mode + ": all the records written by flush()", THREADS * RECORDS_PER_THREAD, count);
+        check.that(mode + ": records of each thread in order, none missing or repeated", ordered);
+    }
+
+    /**
+     * A sink that never finishes writing, with a non-blocking policy, must not hold back a BLOCK sink.
+     */
+    private static void stuckSink(Check check) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Sink stuck = new Sink() {
+            @Override
+            public void write(List<LogEntry> entries) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "stuck";
+            }
+        };
+        int records = 100_000; // more than the queue of a sink holds
+        MemorySink memory = new MemorySink(records + 16);
+        Logger.addSink(stuck, Level.DEBUG, 16, OverflowPolicy.DROP_DEBUG);
+        Logger.addSink(memory, Level.DEBUG, Logger.DEFAULT_BATCH_SIZE, OverflowPolicy.BLOCK);
+        Logger.startLogger(false, false, false);
+        long droppedBefore = Logger.getDroppedCount();
+
+        Thread logging = new Thread(() -> {
+            for (int i = 0; i < records; i++) {
+                Logger.log("record " + i, Level.INFO);
+            }
+            Logger.flush(); // waits for the stuck sink too, until it is released
+        });
+        logging.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (memory.getEntries().size() < records + 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        check.equal("stuck sink: the other sink gets all the records", records + 1, memory.getEntries().size());
+        check.that("stuck sink: its records are dropped and counted", Logger.getDroppedCount() > droppedBefore);
+        release.countDown();
+        logging.join();
+        Logger.stopLogger();
+    }
+
+    /**
+     * An argument whose toString() logs a message of its own, on the same thread.
+     */
+    private static void nestedFormatting(Check check) {
+        MemorySink sink = new MemorySink(16);
+        Logger.addSink(sink);
+        Logger.startLogger(false, false, false);
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                Logger.log(Level.INFO, "inner {} {}", "a", "b");
+                return "arg";
+            }
+        };
+        Logger.log(Level.INFO, "outer {} {} {}", "first", nested, "last");
+        Logger.flush();
+        List<String> lines = sink.getLines();
+        Logger.stopLogger();
+        check.that("nested formatting: inner message intact", lines.stream().anyMatch(l -> l.endsWith("inner a b")));
+        check.that("nested formatting: outer message intact",
+                lines.stream().anyMatch(l -> l.endsWith("outer first arg last")));
+    }
+
+    /**
+     * A field value computed by code that logs a structured record of its own, on the same thread.
+     */
+    private static void nestedStructured(Check check) {
+        MemorySink sink = new MemorySink(16);
+        Logger.addSink(sink);
+        Logger.startLogger(false, false, false);
+        Logger.at(Level.INFO).kv("r", computed()).kv("n", 2).log("outer");
+        Logger.flush();
+        List<String> lines = sink.getLines();
+        Logger.stopLogger();
+        check.that("nested structured: inner record written",
+                lines.stream().anyMatch(l -> l.endsWith("inner step=compute")));
+        check.that("nested structured: outer record written with its fields",
+                lines.stream().anyMatch(l -> l.endsWith("outer r=42 n=2")));
+    }
+
+    private static int computed() {
+        Logger.at(Level.INFO).kv("step", "compute").log("inner");
+        return 42;
+    }
+}
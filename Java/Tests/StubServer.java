@@ -0,0 +1,283 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A small local HTTP server for trying out and benchmarking HttpRequest without depending on the network.
+ * Endpoints:
+ * <ul>
+ *     <li>/bytes?size=N - responds with N bytes of text.</li>
+ *     <li>/echo - responds with the request body (POST, decoded if it was sent with Content-Encoding gzip)
+ *     or the query string (GET).</li>
+ *     <li>/upload - reads the request body (POST or PUT, of any size) without keeping it and responds with
+ *     its length in bytes.</li>
+ *     <li>/text?size=N - responds with N bytes of JSON-like text, compressed with gzip or deflate if the request
+ *     accepts it. getBytesSent() tells how many bytes of body were actually sent.</li>
+ *     <li>/cached?size=N&amp;maxAge=S - responds with N bytes of text that may be cached for S seconds, with an ETag
+ *     and Last-Modified header. Conditional requests get "304 Not Modified".</li>
+ *     <li>/delay?ms=N - responds with "ok" after N milliseconds, to simulate a slow remote server.</li>
+ *     <li>/flaky?key=K&amp;failures=N&amp;fault=F - the first N requests with key K fail, the following ones get "ok".
+ *     The fault is a status code (e.g. 503, with the Retry-After seconds of the retryAfter parameter if given),
+ *     "drop" (the connection is closed without a response) or "hang" (no response for ms milliseconds,
+ *     default 60000). getRequestCount(key) tells how many requests with key K were received.</li>
+ * </ul>
+ *
+ * @author Luka Kralj
+ * @version 22 December 2018
+ */
+public class StubServer {
+
+    private static final byte[] BLOCK = new byte[64 * 1024];
+    private static final byte[] TEXT = ("{\"id\":12345,\"name\":\"Luka\",\"tags\":[\"java\",\"http\"],\"active\":true},\n")
+            .getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // the headers and the body are written separately, without this every response waits for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        Arrays.fill(BLOCK, (byte) 'a');
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Map<String, AtomicInteger> flakyRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Create the server on a free local port. Call start() to start serving.
+     */
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/bytes", this::bytes);
+        server.createContext("/echo", this::echo);
+        server.createContext("/upload", this::upload);
+        server.createContext("/delay", this::delay);
+        server.createContext("/text", this::text);
+        server.createContext("/cached", this::cached);
+        server.createContext("/flaky", this::flaky);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param path Path of the endpoint, e.g. "/bytes".
+     * @return Full URL of the endpoint.
+     */
+    public String getUrl(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @return Number of body bytes sent by /text so far, after compression.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @param key Key of /flaky requests.
+     * @return Number of /flaky requests with the key received so far.
+     */
+    public int getRequestCount(String key) {
+        AtomicInteger count = flakyRequests.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    private void bytes(HttpExchange exchange) throws IOException {
+        long size = Long.parseLong(queryParameter(exchange, "size", "1024"));
+        if (size <= BLOCK.length) {
+            send(exchange, 200, Arrays.copyOf(BLOCK, (int) size));
+            return;
+        }
+        // large bodies are written in blocks, so the server does not need memory for the whole body
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(200, size);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (long left = size; left > 0; left -= BLOCK.length) {
+                out.write(BLOCK, 0, (int) Math.min(left, BLOCK.length));
+            }
+        }
+    }
+
+    private void echo(HttpExchange exchange) throws IOException {
+        byte[] body;
+        if (exchange.getRequestMethod().equals("GET")) {
+            String query = exchange.getRequestURI().getRawQuery();
+            body = (query == null ? "" : query).getBytes("UTF-8");
+        }
+        else {
+            InputStream in = exchange.getRequestBody();
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            body = readAll("gzip".equalsIgnoreCase(encoding) ? new GZIPInputStream(in) : in);
+        }
+        send(exchange, 200, body);
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        long length = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                length += read;
+            }
+        }
+        send(exchange, 200, Long.toString(length).getBytes("UTF-8"));
+    }
+
+    private void text(HttpExchange exchange) throws IOException {
+        long size = Long.parseLong(queryParameter(exchange, "size", "1024"));
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        accepted = accepted == null ? "" : accepted;
+        String encoding = accepted.contains("gzip") ? "gzip" : accepted.contains("deflate") ? "deflate" : null;
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        if (encoding != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1); // the headers of the full response, without a body
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, encoding != null ? 0 : size); // 0 means chunked
+        OutputStream counted = new OutputStream() {
+            private final OutputStream out = exchange.getResponseBody();
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesSent.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesSent.addAndGet(len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+        OutputStream body = encoding == null ? counted
+                : encoding.equals("gzip") ? new GZIPOutputStream(counted, 8 * 1024)
+                : new DeflaterOutputStream(counted);
+        try (OutputStream out = body) {
+            for (long left = size; left > 0; left -= TEXT.length) {
+                out.write(TEXT, 0, (int) Math.min(left, TEXT.length));
+            }
+        }
+    }
+
+    private void cached(HttpExchange exchange) throws IOException {
+        String size = queryParameter(exchange, "size", "1024");
+        String etag = "\"v1-" + size + "\"";
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=" + queryParameter(exchange, "maxAge", "60"));
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", "Sat, 22 Dec 2018 12:00:00 GMT");
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        send(exchange, 200, Arrays.copyOf(BLOCK, Math.min(Integer.parseInt(size), BLOCK.length)));
+    }
+
+    private void flaky(HttpExchange exchange) throws IOException {
+        String key = queryParameter(exchange, "key", "");
+        int failures = Integer.parseInt(queryParameter(exchange, "failures", "1"));
+        int request = flakyRequests.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        if (request > failures) {
+            send(exchange, 200, "ok".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String fault = queryParameter(exchange, "fault", "503");
+        switch (fault) {
+            case "drop":
+                // closing the exchange before the response headers closes the connection
+                exchange.close();
+                return;
+            case "hang":
+                try {
+                    Thread.sleep(Long.parseLong(queryParameter(exchange, "ms", "60000")));
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                send(exchange, 200, "late".getBytes(StandardCharsets.UTF_8));
+                return;
+            default:
+                String retryAfter = queryParameter(exchange, "retryAfter", null);
+                if (retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", retryAfter);
+                }
+                send(exchange, Integer.parseInt(fault), "fault".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void delay(HttpExchange exchange) throws IOException {
+        try {
+            Thread.sleep(Long.parseLong(queryParameter(exchange, "ms", "10")));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        send(exchange, 200, "ok".getBytes("UTF-8"));
+    }
+
+    static String queryParameter(HttpExchange exchange, String name, String defaultValue) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith(name + "=")) {
+                    return pair.substring(name.length() + 1);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            return body.readAllBytes();
+        }
+    }
+}
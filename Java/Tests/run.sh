@@ -0,0 +1,20 @@
+#!/bin/bash
+# Builds the Java snippets together with the checks and runs them.
+# Usage: ./run.sh [logger] [http]
+# Exits with 1 if any check fails.
+
+set -e
+DIR="$(cd "$(dirname "$0")" && pwd)"
+JAVA_DIR="$(dirname "$DIR")"
+OUT="$DIR/out"
+
+rm -rf "$OUT"
+mkdir -p "$OUT"
+javac -encoding UTF-8 -d "$OUT" \
+    "$JAVA_DIR"/SimpleLogger/logger/*.java \
+    $(find "$JAVA_DIR/HttpRequest" -name '*.java' ! -name '*Example.java') \
+    "$DIR"/*.java
+
+# the logger writes its files into ./log
+mkdir -p log
+java -Djava.awt.headless=true -cp "$OUT" Check "$@"
@@ -42,6 +42,28 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
     /** Radius of this button. */
     protected double radius;
 
+    // Hit-test geometry, in component coordinates, for the size and radius it was computed for.
+    private int hitWidth = -1;
+    private int hitHeight = -1;
+    private double hitRadius = -1;
+    /** Center of the oval, or of the ellipse in the start of the capsule. */
+    private double centerX;
+    private double centerY;
+    /** 1 / (semi-axis)^2 of the (end) ellipse. */
+    private double invA2;
+    private double invB2;
+    /** The ends of a capsule: points before capStart or after capEnd are tested against the ellipse. */
+    private double capStart;
+    private double capEnd;
+
+    // Shapes painted by paintComponent(), for the size, radius and border thickness they were created for.
+    private int paintWidth = -1;
+    private int paintHeight = -1;
+    private double paintRadius = -1;
+    private int paintBorderThickness = -1;
+    private Shape fillShape;
+    private Shape borderShape;
+
     /**
      * Construct a default oval button.
      */
@@ -217,11 +239,30 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
      * @return True if this point is withing the shape of the button, false otherwise.
      */
     protected boolean isValidClickPosition(Point screenPosition) {
+        Point location = getLocationOnScreen();
+        return isValidClickPosition(screenPosition.x - location.x, screenPosition.y - location.y);
+    }
+
+    /**
+     * Check if the position is withing the borders of the current shape of the button.
+     * Cheaper than the screen variant, nothing is allocated: use this one for mouse events.
+     *
+     * @param x x coordinate relative to the button (e.g. MouseEvent.getX()).
+     * @param y y coordinate relative to the button (e.g. MouseEvent.getY()).
+     * @return True if this point is withing the shape of the button, false otherwise.
+     */
+    protected boolean isValidClickPosition(int x, int y) {
+        if (getWidth() != hitWidth || getHeight() != hitHeight || radius != hitRadius) {
+            updateHitGeometry();
+        }
         if (shape == SHAPE_OVAL) {
-            return isInOval(screenPosition);
+            return isInEllipse(x - centerX, y - centerY);
+        }
+        else if (orientation == VERTICAL) {
+            return isInCapsule(x - centerX, y, y - centerY);
         }
         else {
-            return isInCapsule(screenPosition);
+            return isInCapsule(y - centerY, x, x - centerX);
         }
     }
 
@@ -239,97 +280,67 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
 
 
     /**
-     * Check if the specified point is within the oval of the button.
-     *
-     * @param p Point to check.
-     * @return True if the point is within the borders or on the border of the oval, false if it is outside of it.
+     * Compute the geometry isValidClickPosition() needs for the current size and radius of the button.
      */
-    private boolean isInOval(Point p) {
-        double x = p.x;
-        double y = p.y;
-
-        // Calculate centre of the ellipse.
-        double s1 = getLocationOnScreen().x + getSize().width / 2;
-        double s2 = getLocationOnScreen().y + getSize().height / 2;
-
-        // Calculate semi-major and semi-minor axis
-        double a = getSize().width / 2;
-        double b = getSize().height / 2;
+    private void updateHitGeometry() {
+        int width = getWidth();
+        int height = getHeight();
+        // semi-axes of the oval, or across the capsule
+        double a = width / 2;
+        double b = height / 2;
+        centerX = a;
+        centerY = b;
+        if (shape == SHAPE_CAPSULE && orientation == VERTICAL) {
+            b = 0.5 * radius * height;
+            centerY = b;
+            capStart = b;
+            capEnd = height - b;
+        }
+        else if (shape == SHAPE_CAPSULE) {
+            a = 0.5 * radius * width;
+            centerX = a;
+            capStart = a;
+            capEnd = width - a;
+        }
+        invA2 = 1 / (a * a);
+        invB2 = 1 / (b * b);
+        hitWidth = width;
+        hitHeight = height;
+        hitRadius = radius;
+    }
 
-        // Check if the given point is withing the specified ellipse:
-        return ((((x - s1)*(x - s1)) / (a*a)) + (((y - s2)*(y - s2)) / (b*b))) <= 1;
+    /**
+     * @param dx x distance from the center of the ellipse.
+     * @param dy y distance from the center of the ellipse.
+     * @return True if the point is within the borders or on the border of the ellipse, false if it is outside of it.
+     */
+    private boolean isInEllipse(double dx, double dy) {
+        return dx * dx * invA2 + dy * dy * invB2 <= 1;
     }
 
     /**
      * Check if the specified point is withing the capsule of the button.
      *
-     * @param p Point to check.
+     * @param across Distance from the center across the capsule.
+     * @param along Position along the capsule.
+     * @param fromStart Distance along the capsule from the center of the ellipse in its start.
      * @return True if the point is within the borders or on the border of the capsule, false if it is outside of it.
      */
-    private boolean isInCapsule(Point p) {
-        double x = p.x;
-        double y = p.y;
-
-        if (orientation == VERTICAL) {
-            Double r = 0.5 * radius * getSize().height;
-            double buttonX = getLocationOnScreen().x;
-            double buttonY = getLocationOnScreen().y;
-            if (y < buttonY + r) {
-                // check if in upper ellipse
-
-                // center of ellipse, semi-major and semi-minor axis
-                double s1 = buttonX + getSize().width / 2;
-                double s2 = buttonY + r;
-                double a = getSize().width / 2;
-                double b = r;
-
-                return ((((x - s1)*(x - s1)) / (a*a)) + (((y - s2)*(y - s2)) / (b*b))) <= 1;
-            }
-            else if (y > buttonY + getSize().height - r) {
-                // check if in lower ellipse
-
-                // center of ellipse, semi-major and semi-minor axis
-                double s1 = buttonX + getSize().width / 2;
-                double s2 = buttonY + getSize().height - r;
-                double a = getSize().width / 2;
-                double b = r;
-
-                return ((((x - s1)*(x - s1)) / (a*a)) + (((y - s2)*(y - s2)) / (b*b))) <= 1;
-            }
-            else {
-                return true;
-            }
+    private boolean isInCapsule(double across, double along, double fromStart) {
+        double fromCenter;
+        if (along < capStart) {
+            fromCenter = fromStart;
+        }
+        else if (along > capEnd) {
+            fromCenter = along - capEnd; // from the center of the ellipse in the end
         }
         else {
-            Double r = 0.5 * radius * getSize().width;
-            double buttonX = getLocationOnScreen().x;
-            double buttonY = getLocationOnScreen().y;
-            if (x < buttonX + r) {
-                // check if in upper ellipse
-
-                // center of ellipse, semi-major and semi-minor axis
-                double s1 = buttonX + r;
-                double s2 = buttonY + getSize().height / 2;
-                double a = r;
-                double b = getSize().height / 2;
-
-                return ((((x - s1)*(x - s1)) / (a*a)) + (((y - s2)*(y - s2)) / (b*b))) <= 1;
-            }
-            else if (x > buttonX + getSize().width - r) {
-                // check if in lower ellipse
-
-                // center of ellipse, semi-major and semi-minor axis
-                double s1 = buttonX + getSize().width - r;
-                double s2 = buttonY + getSize().height / 2;
-                double a = r;
-                double b = getSize().height / 2;
-
-                return ((((x - s1)*(x - s1)) / (a*a)) + (((y - s2)*(y - s2)) / (b*b))) <= 1;
-            }
-            else {
-                return true;
-            }
+            return true;
+        }
+        if (orientation == VERTICAL) {
+            return isInEllipse(across, fromCenter);
         }
+        return isInEllipse(fromCenter, across);
     }
 
     //=============================================
@@ -344,6 +355,7 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
     @Override
     public void paintComponent(Graphics g) {
         Graphics2D gr = (Graphics2D) g;
+        updateShapes();
         if (shape == SHAPE_OVAL) {
             paintOval(gr);
         }
@@ -373,30 +385,53 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
      * @param g Graphic to paint the oval on.
      */
     private void paintOval(Graphics2D g) {
-        Dimension d = getSize();
-
         BufferedImage img = getBackgroundImage();
         if (img == null) {
             setMainColor(g);
-            g.fillOval(0, 0, d.width, d.height);
+            g.fillOval(0, 0, getWidth(), getHeight());
         }
         else {
-            g.setClip(new Ellipse2D.Double(0,0,d.width,d.height));
+            g.setClip(fillShape);
             g.drawImage(img, 0,0,getWidth(), getHeight(),this);
         }
 
-        Shape border = createOvalBorder();
-
         if (borderHighlighted) {
             g.setColor(colorBorderHighlighted);
         }
         else {
             g.setColor(colorBorderNormal);
         }
-        g.fill(border);
+        g.fill(borderShape);
         g.setClip(0,0,getWidth(),getHeight());
     }
 
+    /**
+     * Creates the shapes that are painted if the size, radius or border thickness changed since they were
+     * last created. Building them (Area operations) costs much more than filling them, and the button is
+     * repainted on every mouse move.
+     */
+    private void updateShapes() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width == paintWidth && height == paintHeight && radius == paintRadius
+                && borderThickness == paintBorderThickness) {
+            return;
+        }
+        // Path2D copies of the areas: cheaper to iterate when they are filled
+        if (shape == SHAPE_OVAL) {
+            fillShape = new Ellipse2D.Double(0, 0, width, height);
+            borderShape = new Path2D.Double(createOvalBorder());
+        }
+        else {
+            fillShape = new Path2D.Double(createCapsule(0, 0, width, height));
+            borderShape = new Path2D.Double(createCapsuleBorder());
+        }
+        paintWidth = width;
+        paintHeight = height;
+        paintRadius = radius;
+        paintBorderThickness = borderThickness;
+    }
+
     /**
      * Creates an oval border shape (like a ring).
      *
@@ -422,25 +457,23 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
      * @param g Graphic to paint the capsule on.
      */
     private void paintCapsule(Graphics2D g) {
-        Shape mainCapsule = createCapsule(0, 0, getWidth(), getHeight());
         BufferedImage img = getBackgroundImage();
         if (img == null) {
             setMainColor(g);
-            g.fill(mainCapsule);
+            g.fill(fillShape);
         }
         else {
-            g.setClip(mainCapsule);
+            g.setClip(fillShape);
             g.drawImage(img, 0,0,getWidth(), getHeight(),this);
         }
 
-        Shape border = createCapsuleBorder();
         if (borderHighlighted) {
             g.setColor(colorBorderHighlighted);
         }
         else {
             g.setColor(colorBorderNormal);
         }
-        g.fill(border);
+        g.fill(borderShape);
         g.setClip(0,0,getWidth(),getHeight());
     }
 
@@ -503,7 +536,7 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
 
     @Override
     public void mousePressed(MouseEvent e) {
-        if (isValidClickPosition(e.getLocationOnScreen())) {
+        if (isValidClickPosition(e.getX(), e.getY())) {
             currentBackground = colorHighlighted.darker();
         }
         repaint();
@@ -511,7 +544,7 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
 
     @Override
     public void mouseReleased(MouseEvent e) {
-        if (isValidClickPosition(e.getLocationOnScreen())) {
+        if (isValidClickPosition(e.getX(), e.getY())) {
             currentBackground = colorHighlighted;
         }
         else {
@@ -522,7 +555,7 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
 
     @Override
     public void mouseEntered(MouseEvent e) {
-        if (isValidClickPosition(e.getLocationOnScreen())) {
+        if (isValidClickPosition(e.getX(), e.getY())) {
             currentBackground = colorHighlighted;
         }
         repaint();
@@ -536,7 +569,7 @@ public class OvalButton extends JButton implements MouseListener, MouseMotionLis
 
     @Override
     public void mouseMoved(MouseEvent e) {
-        if (isValidClickPosition(e.getLocationOnScreen())) {
+        if (isValidClickPosition(e.getX(), e.getY())) {
             currentBackground = colorHighlighted;
         }
         else {